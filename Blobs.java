@@ -1,12 +1,57 @@
 package gitlet;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
-Blobs is a class for the content of the files.
+Blobs is a class for the content of the files. The content is
+stored as the raw bytes of the file, deflate-compressed behind a
+"blob SIZE" header ending in a zero byte, and is streamed between
+the working directory and the store without being kept in memory.
+A file larger than SMALL is split by Chunker into content-defined
+chunks, each stored once as a chunk object behind a "chunk SIZE"
+header, and its blob is a "chunks SIZE" header followed by the
+20-byte IDs of its chunks in order. Versions of a large file that
+differ in a few places then share most of their chunks. The blob
+ID is the SHA-1 of the whole content either way.
 @author Yuhan Dong
  */
 public class Blobs implements Serializable {
+
+    /** Kept equal to the value computed for the class when blobs
+     * were serialized with their content, so those still load.
+     */
+    private static final long serialVersionUID = 8110379787799143321L;
+
+    /** Bytes added to the length of a cached content for the array
+     * header.
+     */
+    private static final long ARRAY_OVERHEAD = 16;
+
+    /** The largest file, in bytes, that is stored whole.*/
+    private static final long SMALL = 1 << 20;
+
+    /** The start of the header of a blob stored as chunks.*/
+    private static final String CHUNKED = "chunks ";
+
     /**Name of the file.*/
     private String _name;
 
@@ -15,18 +60,248 @@ public class Blobs implements Serializable {
      */
     private String id;
 
-    /**Stores the content of the file as a String.*/
+    /**The content of blobs that were serialized as a String,
+     * null for blobs stored as compressed bytes.*/
     private String content;
 
-    /* *Blobs constructor.
-    *Take in the name of the file, save the content
-    *of the file as a sting. Generate a unique ID for
-    *the associated file.
+    /** Save the content of FILE into the store, unless a blob with
+     * the same content is already there, and return its ID. The
+     * file is read once. A file of at most SMALL bytes is read into
+     * memory, hashed, and only compressed if the store lacks it; a
+     * larger one is streamed through Chunker, and only the chunks the
+     * store lacks are written.
+     * @param file the file to save.
+     */
+    static String store(File file) {
+        if (file.length() <= SMALL) {
+            byte[] bytes = Utils.readContents(file);
+            String id = Utils.sha1((Object) bytes);
+            if (!ObjectStore.contains(ObjectStore.BLOBS, id)) {
+                write(ObjectStore.BLOBS, id, "blob " + bytes.length, bytes);
+            }
+            return id;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            long size = 0;
+            Chunker chunker = new Chunker(in);
+            for (byte[] chunk = chunker.next(); chunk != null;
+                 chunk = chunker.next()) {
+                md.update(chunk);
+                size += chunk.length;
+                String chunkId = Utils.sha1((Object) chunk);
+                if (!ObjectStore.contains(ObjectStore.CHUNKS, chunkId)) {
+                    write(ObjectStore.CHUNKS, chunkId,
+                            "chunk " + chunk.length, chunk);
+                }
+                chunks.write(PackFile.fromHex(chunkId));
+            }
+            Trace.fileRead(size);
+            String id = PackFile.toHex(md.digest());
+            if (!ObjectStore.contains(ObjectStore.BLOBS, id)) {
+                write(ObjectStore.BLOBS, id, CHUNKED + size,
+                        chunks.toByteArray());
+            }
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Save BYTES behind HEADER as the object ID of the given KIND.
+     * @param kind BLOBS or CHUNKS.
+     * @param id the full ID.
+     * @param header the header, without its zero byte.
+     * @param bytes what follows the header.
+     */
+    private static void write(String kind, String id, String header,
+                              byte[] bytes) {
+        File file = ObjectStore.looseFile(kind, id);
+        file.getParentFile().mkdirs();
+        File tmp = Utils.temporary(file);
+        try {
+            try (OutputStream out = new DeflaterOutputStream(
+                    Files.newOutputStream(tmp.toPath()))) {
+                out.write((header + "\0").getBytes(StandardCharsets.UTF_8));
+                out.write(bytes);
+            }
+            Trace.objectWritten(tmp.length());
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the content of the blob ID. Blobs
+     * written as serialized objects are recognized by the
+     * serialization magic number. The chunks of a blob stored as
+     * chunks are read one at a time as the stream reaches them.
+     * The caller closes the stream.
+     * @param id the full blob ID.
+     */
+    static InputStream open(String id) {
+        InputStream in = new BufferedInputStream(
+                ObjectStore.open(ObjectStore.BLOBS, id));
+        try {
+            if (serialized(in)) {
+                try (ObjectInputStream legacy = new ObjectInputStream(in)) {
+                    Blobs blob = (Blobs) legacy.readObject();
+                    return new ByteArrayInputStream(
+                            blob.content.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            InputStream result = inflated(in);
+            if (!readHeader(result).startsWith(CHUNKED)) {
+                return result;
+            }
+            byte[] chunks = result.readAllBytes();
+            result.close();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                private int next;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return next < chunks.length;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    byte[] chunk = Arrays.copyOfRange(chunks, next,
+                            next + PackFile.ID_BYTES);
+                    next += PackFile.ID_BYTES;
+                    return openChunk(PackFile.toHex(chunk));
+                }
+            });
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the IDs of the chunks of the blob ID in order, or an
+     * empty list if it is stored whole.
+     * @param id the full blob ID.
+     */
+    static List<String> chunksOf(String id) {
+        List<String> result = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(
+                ObjectStore.open(ObjectStore.BLOBS, id))) {
+            if (serialized(in)) {
+                return result;
+            }
+            InputStream inflated = inflated(in);
+            if (!readHeader(inflated).startsWith(CHUNKED)) {
+                return result;
+            }
+            byte[] chunks = inflated.readAllBytes();
+            for (int i = 0; i < chunks.length; i += PackFile.ID_BYTES) {
+                result.add(PackFile.toHex(Arrays.copyOfRange(chunks, i,
+                        i + PackFile.ID_BYTES)));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the content of the chunk ID.
+     * @param id the full chunk ID.
+     */
+    private static InputStream openChunk(String id) {
+        InputStream result = new InflaterInputStream(
+                ObjectStore.open(ObjectStore.CHUNKS, id));
+        try {
+            readHeader(result);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Return true if the stored blob IN starts with the magic
+     * number of serialization, leaving IN where it was.
+     * @param in the stored bytes, supporting mark.
      */
-    public Blobs(String name, File file) {
-        this._name = name;
-        content = Utils.readContentsAsString(file);
-        id = Utils.sha1(content);
+    private static boolean serialized(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == 0xac && second == 0xed;
+    }
+
+    /** Return a stream over the stored blob IN inflated. A blob that
+     * a pack rebuilt from a delta is already inflated, behind the
+     * byte PackFile.RAW.
+     * @param in the stored bytes, supporting mark.
+     */
+    private static InputStream inflated(InputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() == PackFile.RAW) {
+            return in;
+        }
+        in.reset();
+        return new InflaterInputStream(in);
+    }
+
+    /** Read the header of an object from IN, up to and including its
+     * zero byte, and return it without the zero byte.
+     * @param in the inflated object.
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int c = in.read();
+        while (c > 0) {
+            header.append((char) c);
+            c = in.read();
+        }
+        return header.toString();
+    }
+
+    /** Write the content of the blob ID to FILE, creating or
+     * overwriting it, and creating its directory if needed.
+     * @param id the full blob ID.
+     * @param file the destination.
+     */
+    static void writeTo(String id, File file) {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        byte[] cached = ObjectCache.shared().get(id, byte[].class);
+        if (cached != null) {
+            Utils.writeContents(file, cached);
+            return;
+        }
+        try (InputStream in = open(id)) {
+            Trace.fileWritten(Files.copy(in, file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the content of the blob ID as bytes. Only for
+     * callers that need the whole content, such as merge
+     * conflict markers.
+     * @param id the full blob ID.
+     */
+    static byte[] readContents(String id) {
+        byte[] result = ObjectCache.shared().get(id, byte[].class);
+        if (result != null) {
+            return result;
+        }
+        try (InputStream in = open(id)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            result = out.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectCache.shared().put(id, result, ARRAY_OVERHEAD + result.length);
+        return result;
     }
 
     /**return the name of the file.*/
@@ -38,9 +313,4 @@ public class Blobs implements Serializable {
     public String getId() {
         return id;
     }
-
-    /**return the content pf the file.*/
-    public String getContent() {
-        return content;
-    }
 }
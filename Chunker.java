@@ -0,0 +1,122 @@
+package gitlet;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+* Splits a stream into content-defined chunks with FastCDC, so that an
+* edit to a large file only changes the chunks around it and the rest
+* are shared with the earlier version. A cut is made where a gear hash
+* of the last 64 bytes has its top bits all zero. No cut is made in the
+* first MIN_SIZE bytes of a chunk; up to AVG_SIZE a cut needs more zero
+* bits than after it, which keeps chunk sizes close to AVG_SIZE, and a
+* chunk is cut at MAX_SIZE regardless.
+*
+* The gear table comes from a fixed seed, so every run cuts the same
+* content in the same places and chunks are shared across commits and
+* files.
+* @author Yuhan Dong
+ */
+class Chunker {
+
+    /** The smallest chunk but the last, in bytes.*/
+    static final int MIN_SIZE = 16 << 10;
+
+    /** The size chunks are normalized around, in bytes.*/
+    static final int AVG_SIZE = 64 << 10;
+
+    /** The largest chunk, in bytes.*/
+    static final int MAX_SIZE = 256 << 10;
+
+    /** The hash bits that must be zero for a cut before AVG_SIZE.*/
+    private static final long MASK_S = -1L << (64 - 18);
+
+    /** The hash bits that must be zero for a cut after AVG_SIZE.*/
+    private static final long MASK_L = -1L << (64 - 14);
+
+    /** A random 64-bit value for each byte value.*/
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x46617374434443L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** The stream being split.*/
+    private final InputStream in;
+
+    /** Bytes read from IN and not yet returned.*/
+    private final byte[] buffer = new byte[2 * MAX_SIZE];
+
+    /** Where the unreturned bytes start in BUFFER.*/
+    private int start;
+
+    /** Where the unreturned bytes end in BUFFER.*/
+    private int end;
+
+    /** True once IN is exhausted.*/
+    private boolean done;
+
+    /** A chunker of the stream IN, which the caller closes.
+     * @param in the stream.
+     */
+    Chunker(InputStream in) {
+        this.in = in;
+    }
+
+    /** Return the next chunk of the stream, or null at its end.*/
+    byte[] next() throws IOException {
+        if (end - start < MAX_SIZE && !done) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+            while (end < buffer.length) {
+                int n = in.read(buffer, end, buffer.length - end);
+                if (n < 0) {
+                    done = true;
+                    break;
+                }
+                end += n;
+            }
+        }
+        if (start == end) {
+            return null;
+        }
+        int length = cut(buffer, start, end - start);
+        byte[] chunk = Arrays.copyOfRange(buffer, start, start + length);
+        start += length;
+        return chunk;
+    }
+
+    /** Return the length of the chunk starting at OFFSET in DATA,
+     * of which LENGTH bytes are available.
+     * @param data the bytes.
+     * @param offset where the chunk starts.
+     * @param length the bytes available from OFFSET.
+     */
+    static int cut(byte[] data, int offset, int length) {
+        if (length <= MIN_SIZE) {
+            return length;
+        }
+        int last = Math.min(length, MAX_SIZE);
+        int normal = Math.min(last, AVG_SIZE);
+        long hash = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+            if ((hash & MASK_S) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < last; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+            if ((hash & MASK_L) == 0) {
+                return i + 1;
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,84 @@
+package gitlet;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/** Thin entry point that forwards a command to the daemon of the
+ *  repository in the current directory and copies back its output and
+ *  exit code. Without a running daemon the command runs in this
+ *  process instead. The daemon does not see the environment of the
+ *  client, so GITLET_TRACE set here is forwarded as --trace.
+ *  @author Yuhan Dong
+ */
+public class Client {
+
+    /** Usage: java gitlet.Client ARGS, with the same ARGS as
+     *  gitlet.Main. */
+    public static void main(String... args) {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            Main.main(args);
+            return;
+        }
+        if (Trace.requested()
+                && (args.length == 0 || !args[0].equals("--trace"))) {
+            String[] traced = new String[args.length + 1];
+            traced[0] = "--trace";
+            System.arraycopy(args, 0, traced, 1, args.length);
+            args = traced;
+        }
+        int code;
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            code = copyReply(new DataInputStream(
+                    Channels.newInputStream(channel)));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        System.exit(code);
+    }
+
+    /** Copy the output frames of IN to standard output and error and
+     *  return the exit code. */
+    private static int copyReply(DataInputStream in) throws IOException {
+        while (true) {
+            byte kind = in.readByte();
+            int value = in.readInt();
+            if (kind == Daemon.EXIT) {
+                System.out.flush();
+                return value;
+            }
+            byte[] bytes = in.readNBytes(value);
+            PrintStream target = kind == Daemon.ERR ? System.err : System.out;
+            target.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /** Return a connection to the daemon, or null if none is
+     *  listening. */
+    static SocketChannel connect() {
+        if (!Daemon.SOCKET.exists()) {
+            return null;
+        }
+        try {
+            SocketChannel channel = SocketChannel.open(
+                    StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(
+                    Daemon.SOCKET.toPath()));
+            return channel;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+* The commit graph, kept in .gitlet/commit-graph, so that ancestry
+* questions are answered without reading commit objects. Every commit
+* has a position; for each position the graph stores the positions of
+* the parent and merge parent and the generation number, which is one
+* more than the largest generation of the parents (1 for the initial
+* commit). A commit always has a larger generation than any of its
+* ancestors, which lets merge-base walks stop early.
+*
+* The file is the magic GCGR, a version, the commit count, a fanout
+* table of 256 ints, the sorted 20-byte IDs and then for each ID its
+* parent position, merge parent position (-1 for none) and generation.
+* Commits written since the file was last saved are read from the
+* object store when first needed and added to the graph in memory;
+* save() writes them out.
+* @author Yuhan Dong
+ */
+class CommitGraph {
+
+    /** The commit-graph file.*/
+    static final File FILE = new File(".gitlet/commit-graph");
+
+    /** Magic number of the file.*/
+    private static final int MAGIC = 0x47434752;
+
+    /** Format version of the file.*/
+    private static final int VERSION = 1;
+
+    /** Marks commits reached from the first commit of a walk.*/
+    private static final int PARENT1 = 1;
+
+    /** Marks commits reached from the second commit of a walk.*/
+    private static final int PARENT2 = 2;
+
+    /** Marks commits that are ancestors of a common ancestor.*/
+    private static final int STALE = 4;
+
+    /** Number of commits loaded from the file.*/
+    private int stored;
+
+    /** Fanout table of the stored IDs.*/
+    private int[] fanout = new int[256];
+
+    /** The stored IDs, 20 bytes each, sorted.*/
+    private byte[] ids = new byte[0];
+
+    /** Positions of the commits added since the file was loaded.*/
+    private final HashMap<String, Integer> added = new HashMap<>();
+
+    /** IDs of the commits added since the file was loaded.*/
+    private String[] addedIds = new String[16];
+
+    /** Number of commits, stored and added.*/
+    private int count;
+
+    /** Parent position of each commit, -1 for none.*/
+    private int[] parents = new int[16];
+
+    /** Merge parent position of each commit, -1 for none.*/
+    private int[] mergeParents = new int[16];
+
+    /** Generation number of each commit.*/
+    private int[] generations = new int[16];
+
+    /** Return the commit graph of the repository.*/
+    static CommitGraph load() {
+        CommitGraph graph = new CommitGraph();
+        if (FILE.isFile()) {
+            graph.read();
+        }
+        return graph;
+    }
+
+    /** Read the commit-graph file.*/
+    private void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(FILE.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int n = in.readInt();
+            int[] table = new int[256];
+            for (int i = 0; i < 256; i++) {
+                table[i] = in.readInt();
+            }
+            byte[] raw = new byte[n * PackFile.ID_BYTES];
+            in.readFully(raw);
+            grow(n);
+            for (int i = 0; i < n; i++) {
+                parents[i] = in.readInt();
+                mergeParents[i] = in.readInt();
+                generations[i] = in.readInt();
+            }
+            fanout = table;
+            ids = raw;
+            stored = n;
+            count = n;
+        } catch (IOException excp) {
+            stored = 0;
+            count = 0;
+        }
+    }
+
+    /** Make room for at least N commits.
+     * @param n the number of commits.
+     */
+    private void grow(int n) {
+        if (n <= parents.length) {
+            return;
+        }
+        int size = Math.max(n, parents.length * 2);
+        parents = Arrays.copyOf(parents, size);
+        mergeParents = Arrays.copyOf(mergeParents, size);
+        generations = Arrays.copyOf(generations, size);
+    }
+
+    /** Return the position of the stored ID, or -1.
+     * @param id the ID as 20 bytes.
+     */
+    private int findStored(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : fanout[first - 1];
+        int hi = fanout[first] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Arrays.compareUnsigned(ids, mid * PackFile.ID_BYTES,
+                    (mid + 1) * PackFile.ID_BYTES, id, 0, PackFile.ID_BYTES);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the position of ID, or -1 if it is not in the graph yet.
+     * @param id the full commit ID.
+     */
+    private int find(String id) {
+        Integer pos = added.get(id);
+        if (pos != null) {
+            return pos;
+        }
+        return stored == 0 ? -1 : findStored(PackFile.fromHex(id));
+    }
+
+    /** Return the ID at position POS.
+     * @param pos the position.
+     */
+    String idAt(int pos) {
+        if (pos >= stored) {
+            return addedIds[pos - stored];
+        }
+        return PackFile.toHex(Arrays.copyOfRange(ids, pos * PackFile.ID_BYTES,
+                (pos + 1) * PackFile.ID_BYTES));
+    }
+
+    /** Return the position of the commit ID, adding it and any
+     * missing ancestors from the object store first.
+     * @param id the full commit ID.
+     */
+    int position(String id) {
+        int pos = find(id);
+        if (pos >= 0) {
+            return pos;
+        }
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        HashMap<String, String[]> read = new HashMap<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String top = stack.peek();
+            if (find(top) >= 0) {
+                stack.pop();
+                continue;
+            }
+            String[] commitParents = read.get(top);
+            if (commitParents == null) {
+                Commits commit = Commits.read(top);
+                commitParents = new String[] {commit.getParentID(),
+                    commit.getMergeParentID()};
+                read.put(top, commitParents);
+            }
+            String p1 = commitParents[0];
+            String p2 = commitParents[1];
+            if (p1 != null && find(p1) < 0) {
+                stack.push(p1);
+            } else if (p2 != null && find(p2) < 0) {
+                stack.push(p2);
+            } else {
+                stack.pop();
+                read.remove(top);
+                add(top, p1 == null ? -1 : find(p1),
+                        p2 == null ? -1 : find(p2));
+            }
+        }
+        return find(id);
+    }
+
+    /** Add the commit ID with the parents at positions P1 and P2.
+     * @param id the full commit ID.
+     * @param p1 the parent position or -1.
+     * @param p2 the merge parent position or -1.
+     */
+    private void add(String id, int p1, int p2) {
+        grow(count + 1);
+        int generation = 1;
+        if (p1 >= 0) {
+            generation = Math.max(generation, generations[p1] + 1);
+        }
+        if (p2 >= 0) {
+            generation = Math.max(generation, generations[p2] + 1);
+        }
+        parents[count] = p1;
+        mergeParents[count] = p2;
+        generations[count] = generation;
+        if (added.size() == addedIds.length) {
+            addedIds = Arrays.copyOf(addedIds, addedIds.length * 2);
+        }
+        addedIds[added.size()] = id;
+        added.put(id, count);
+        count += 1;
+    }
+
+    /** Return the generation number of the commit ID.
+     * @param id the full commit ID.
+     */
+    int generation(String id) {
+        return generations[position(id)];
+    }
+
+    /** Return the ID of the best common ancestor of the commits
+     * A and B, the one with the highest generation, or null if
+     * they share no history. Commits are visited from the highest
+     * generation down, each marked with the side it was reached
+     * from. A commit reached from both sides is a common ancestor,
+     * and everything below it is marked stale; the walk stops as
+     * soon as only stale commits are left to visit, so it never
+     * goes further back than the common ancestors themselves. The
+     * queue entries not marked stale are counted as they are added,
+     * removed and marked, so that test costs nothing per step.
+     * @param a the first commit ID.
+     * @param b the second commit ID.
+     */
+    String mergeBase(String a, String b) {
+        int pa = position(a);
+        int pb = position(b);
+        if (pa == pb) {
+            return a;
+        }
+        int[] flags = new int[count];
+        int[] queued = new int[count];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((x, y) ->
+                Integer.compare(generations[y], generations[x]));
+        flags[pa] |= PARENT1;
+        flags[pb] |= PARENT2;
+        queue.add(pa);
+        queue.add(pb);
+        queued[pa] += 1;
+        queued[pb] += 1;
+        int nonStale = 2;
+        int best = -1;
+        while (nonStale > 0) {
+            int pos = queue.remove();
+            queued[pos] -= 1;
+            int flag = flags[pos];
+            if ((flag & STALE) == 0) {
+                nonStale -= 1;
+            }
+            if (flag == (PARENT1 | PARENT2)) {
+                if (best < 0 || generations[pos] > generations[best]) {
+                    best = pos;
+                }
+                flag |= STALE;
+                flags[pos] = flag;
+                nonStale -= queued[pos];
+            }
+            for (int parent : new int[] {parents[pos], mergeParents[pos]}) {
+                if (parent >= 0 && (flags[parent] & flag) != flag) {
+                    if ((flag & ~flags[parent] & STALE) != 0) {
+                        nonStale -= queued[parent];
+                    }
+                    flags[parent] |= flag;
+                    queue.add(parent);
+                    queued[parent] += 1;
+                    if ((flags[parent] & STALE) == 0) {
+                        nonStale += 1;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : idAt(best);
+    }
+
+    /** Write the graph, including the commits added in memory,
+     * if anything was added since it was loaded.
+     */
+    void save() {
+        if (added.isEmpty()) {
+            return;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        String[] hex = new String[count];
+        for (int i = 0; i < count; i++) {
+            hex[i] = idAt(i);
+        }
+        Arrays.sort(order, (x, y) -> hex[x].compareTo(hex[y]));
+        int[] newPos = new int[count];
+        for (int i = 0; i < count; i++) {
+            newPos[order[i]] = i;
+        }
+        File tmp = Utils.temporary(FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(
+                            tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                int[] table = new int[256];
+                for (String id : hex) {
+                    table[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+                }
+                int total = 0;
+                for (int i = 0; i < 256; i++) {
+                    total += table[i];
+                    out.writeInt(total);
+                }
+                for (Integer pos : order) {
+                    out.write(PackFile.fromHex(hex[pos]));
+                }
+                for (Integer pos : order) {
+                    out.writeInt(parents[pos] < 0 ? -1 : newPos[parents[pos]]);
+                    out.writeInt(mergeParents[pos] < 0
+                            ? -1 : newPos[mergeParents[pos]]);
+                    out.writeInt(generations[pos]);
+                }
+            }
+            Files.move(tmp.toPath(), FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package gitlet;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+* The headers of all commits, appended to .gitlet/commit-headers as
+* commits are written. A header is what global-log prints: the ID,
+* the time and the message, without the map of blobs. The file is the
+* magic GCHD and a version, followed by one record per commit: an int
+* length, the 20-byte ID, the time in milliseconds and the message in
+* UTF-8. Reading it is one sequential pass over a mapped file, and the
+* records are decoded and formatted in parallel.
+* @author Yuhan Dong
+ */
+class CommitHeaders {
+
+    /** The header file.*/
+    static final File FILE = new File(".gitlet/commit-headers");
+
+    /** Magic number of the file.*/
+    private static final int MAGIC = 0x47434844;
+
+    /** Format version of the file.*/
+    private static final int VERSION = 1;
+
+    /** Number of records formatted by one task.*/
+    private static final int CHUNK = 1024;
+
+    /** Number of chunks formatted before they are written out.*/
+    private static final int BATCH = 64;
+
+    /** Append the header of COMMIT.
+     * @param commit the commit just written.
+     */
+    static void add(Commits commit) {
+        if (!FILE.exists()) {
+            rebuild();
+            return;
+        }
+        try {
+            Files.write(FILE.toPath(), record(commit),
+                    StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the record of COMMIT.
+     * @param commit the commit.
+     */
+    private static byte[] record(Commits commit) {
+        byte[] message = commit.getMessage().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(PackFile.ID_BYTES + 8 + message.length);
+            out.write(PackFile.fromHex(commit.getCommitID()));
+            out.writeLong(commit.getTime());
+            out.write(message);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Write the headers of every commit in the object store.*/
+    static void rebuild() {
+        File tmp = Utils.temporary(FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(
+                            tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (String id : ObjectStore.ids(ObjectStore.COMMITS)) {
+                    out.write(record(Commits.read(id)));
+                }
+            }
+            Files.move(tmp.toPath(), FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write every header to OUT in the global-log format.
+     * @param out the destination.
+     */
+    static void print(Writer out) throws IOException {
+        if (!FILE.exists()) {
+            rebuild();
+        }
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (data.getInt(0) != MAGIC) {
+            throw Utils.error("Corrupt %s.", FILE.getPath());
+        }
+        List<Integer> offsets = new ArrayList<>();
+        int pos = 8;
+        while (pos + 4 <= data.limit()) {
+            offsets.add(pos);
+            pos += 4 + data.getInt(pos);
+        }
+        int chunks = (offsets.size() + CHUNK - 1) / CHUNK;
+        for (int batch = 0; batch < chunks; batch += BATCH) {
+            List<String> text = IntStream.range(batch,
+                    Math.min(chunks, batch + BATCH)).parallel()
+                    .mapToObj(chunk -> format(data, offsets, chunk))
+                    .collect(Collectors.toList());
+            for (String piece : text) {
+                out.write(piece);
+            }
+        }
+        out.flush();
+    }
+
+    /** Return the global-log text of the records in chunk CHUNK.
+     * @param data the mapped file.
+     * @param offsets the offset of each record.
+     * @param chunk the chunk number.
+     */
+    private static String format(MappedByteBuffer data, List<Integer> offsets,
+                                 int chunk) {
+        SimpleDateFormat format = new SimpleDateFormat(Commits.TIME_FORMAT);
+        StringBuilder text = new StringBuilder();
+        byte[] id = new byte[PackFile.ID_BYTES];
+        int end = Math.min(offsets.size(), (chunk + 1) * CHUNK);
+        for (int i = chunk * CHUNK; i < end; i++) {
+            int pos = offsets.get(i);
+            int length = data.getInt(pos);
+            data.get(pos + 4, id);
+            long time = data.getLong(pos + 4 + PackFile.ID_BYTES);
+            byte[] message = new byte[length - PackFile.ID_BYTES - 8];
+            data.get(pos + 12 + PackFile.ID_BYTES, message);
+            text.append("===\ncommit ").append(PackFile.toHex(id))
+                .append("\nDate: ").append(format.format(new Date(time)))
+                .append('\n')
+                .append(new String(message, StandardCharsets.UTF_8))
+                .append("\n\n");
+        }
+        return text.toString();
+    }
+}
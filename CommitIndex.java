@@ -0,0 +1,211 @@
+package gitlet;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+* The index of all commit IDs, used to resolve abbreviated IDs without
+* listing the commits. The sorted part is .gitlet/commit-index: the
+* magic GCID, a version, the count, a fanout table of 256 ints and the
+* sorted 20-byte IDs. It is memory-mapped and searched with a binary
+* search. New commits are appended as raw 20-byte IDs to the journal
+* .gitlet/commit-index.new, which is merged into the sorted part once
+* it grows past JOURNAL_LIMIT entries, so writing a commit never
+* rewrites the whole index.
+* @author Yuhan Dong
+ */
+class CommitIndex {
+
+    /** The sorted index.*/
+    static final File FILE = new File(".gitlet/commit-index");
+
+    /** The journal of IDs added since the index was last sorted.*/
+    static final File JOURNAL = new File(".gitlet/commit-index.new");
+
+    /** Magic number of the sorted index.*/
+    private static final int MAGIC = 0x47434944;
+
+    /** Format version of the sorted index.*/
+    private static final int VERSION = 1;
+
+    /** Size of the header: magic, version, count and fanout.*/
+    private static final int HEADER = 12 + 256 * 4;
+
+    /** Number of journal entries that triggers a merge.*/
+    private static final int JOURNAL_LIMIT = 4096;
+
+    /** Shortest prefix that is looked up.*/
+    static final int MIN_PREFIX = 4;
+
+    /** Record the new commit ID.
+     * @param id the full commit ID.
+     */
+    static void add(String id) {
+        if (!FILE.exists() && !JOURNAL.exists()) {
+            rebuild();
+            return;
+        }
+        try {
+            Files.write(JOURNAL.toPath(), PackFile.fromHex(id),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (JOURNAL.length() > JOURNAL_LIMIT * PackFile.ID_BYTES) {
+            compact();
+        }
+    }
+
+    /** Return the IDs starting with PREFIX, at most LIMIT of them.
+     * PREFIX must be at least MIN_PREFIX hex digits long.
+     * @param prefix the abbreviated ID.
+     * @param limit the number of matches wanted.
+     */
+    static List<String> find(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        prefix = prefix.toLowerCase();
+        if (prefix.length() < MIN_PREFIX || prefix.length() > Utils.UID_LENGTH
+                || !prefix.matches("[0-9a-f]*")) {
+            return result;
+        }
+        if (!FILE.exists() && !JOURNAL.exists()) {
+            rebuild();
+        }
+        if (FILE.exists()) {
+            findSorted(prefix, limit, result);
+        }
+        for (String id : journal()) {
+            if (result.size() < limit && id.startsWith(prefix)
+                    && !result.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Add the IDs of the sorted index starting with PREFIX to RESULT
+     * until it holds LIMIT IDs.
+     * @param prefix the abbreviated ID.
+     * @param limit the number of matches wanted.
+     * @param result the matches found.
+     */
+    private static void findSorted(String prefix, int limit,
+                                   List<String> result) {
+        MappedByteBuffer index = map(FILE);
+        int count = index.getInt(8);
+        byte[] low = PackFile.fromHex((prefix + "0".repeat(Utils.UID_LENGTH))
+                .substring(0, Utils.UID_LENGTH));
+        int first = low[0] & 0xff;
+        int lo = first == 0 ? 0 : index.getInt(12 + (first - 1) * 4);
+        int hi = index.getInt(12 + first * 4);
+        byte[] id = new byte[PackFile.ID_BYTES];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            index.get(HEADER + mid * PackFile.ID_BYTES, id);
+            if (Arrays.compareUnsigned(id, low) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < count && result.size() < limit; i++) {
+            index.get(HEADER + i * PackFile.ID_BYTES, id);
+            String hex = PackFile.toHex(id);
+            if (!hex.startsWith(prefix)) {
+                break;
+            }
+            result.add(hex);
+        }
+    }
+
+    /** Return the IDs in the journal.*/
+    private static List<String> journal() {
+        List<String> result = new ArrayList<>();
+        if (JOURNAL.exists()) {
+            byte[] raw = Utils.readContents(JOURNAL);
+            for (int i = 0; i + PackFile.ID_BYTES <= raw.length;
+                 i += PackFile.ID_BYTES) {
+                result.add(PackFile.toHex(Arrays.copyOfRange(raw, i,
+                        i + PackFile.ID_BYTES)));
+            }
+        }
+        return result;
+    }
+
+    /** Merge the journal into the sorted index.*/
+    static void compact() {
+        TreeSet<String> ids = new TreeSet<>(journal());
+        if (FILE.exists()) {
+            MappedByteBuffer index = map(FILE);
+            int count = index.getInt(8);
+            byte[] id = new byte[PackFile.ID_BYTES];
+            for (int i = 0; i < count; i++) {
+                index.get(HEADER + i * PackFile.ID_BYTES, id);
+                ids.add(PackFile.toHex(id));
+            }
+        }
+        write(ids);
+    }
+
+    /** Build the sorted index from the commits in the object store.*/
+    static void rebuild() {
+        write(new TreeSet<>(ObjectStore.ids(ObjectStore.COMMITS)));
+    }
+
+    /** Write IDS as the sorted index and empty the journal.
+     * @param ids the sorted IDs.
+     */
+    private static void write(TreeSet<String> ids) {
+        File tmp = Utils.temporary(FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(
+                            tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(ids.size());
+                int[] fanout = new int[256];
+                for (String id : ids) {
+                    fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+                }
+                int total = 0;
+                for (int i = 0; i < 256; i++) {
+                    total += fanout[i];
+                    out.writeInt(total);
+                }
+                for (String id : ids) {
+                    out.write(PackFile.fromHex(id));
+                }
+            }
+            Files.move(tmp.toPath(), FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            JOURNAL.delete();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return FILE mapped read-only into memory.
+     * @param file the file to map.
+     */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -1,21 +1,58 @@
 package gitlet;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
 * Commits class will consist of a log message, timestamp,
 * a mapping of file names to blob references, a parent reference,
 * and (for merges) a second parent reference.(Reference to CS61B
 * project guidelines).
+*
+* A commit is stored in a binary format: the magic GCMT, a version,
+* the time in milliseconds, the number of parents and their 20-byte
+* IDs, the message, and the 20-byte ID of the Trees holding the root
+* directory. Strings are an int length followed by UTF-8. The
+* encoding of a commit is always the same, and its SHA-1 is the
+* commit ID. Commits of version 1 listed every file, sorted by name,
+* instead of a tree, and commits written by older versions still were
+* serialized objects; both are still read.
 * @author Yuhan Dong
  */
 public class Commits implements Serializable {
 
+    /** Kept equal to the value computed for the class before parent
+     * IDs were added, so commits written by older versions still load.
+     */
+    private static final long serialVersionUID = -305890174902632770L;
+
+    /** The format of the timestamps printed by log.*/
+    static final String TIME_FORMAT = "E MMM dd HH:mm:ss yyyy Z";
+
+    /** Magic number of an encoded commit.*/
+    private static final int MAGIC = 0x47434d54;
+
+    /** Format version of an encoded commit.*/
+    private static final int VERSION = 2;
+
+    /** Format version of the commits that listed every file.*/
+    private static final int FLAT_VERSION = 1;
+
+    /** Bytes added to the estimated heap size of a commit read,
+     * which is otherwise taken as twice its encoded size.
+     */
+    private static final long OBJECT_OVERHEAD = 64;
+
     /** Contains the commit message.*/
     private String _message;
 
@@ -27,10 +64,26 @@ public class Commits implements Serializable {
 
     /** The hashmap of blob where the key
      * is the name of the file, and the definition
-     * is the Blob ID.
+     * is the Blob ID. Only set in commits that were
+     * serialized by older versions.
      */
-    private HashMap<String, String> blob
-            = new HashMap<String, String>();
+    private HashMap<String, String> blob;
+
+    /** The blob IDs of the files by path. Null until it is first
+     * needed if the commit has a tree.
+     */
+    private transient Manifest files;
+
+    /** The ID of the tree of the root directory, null for commits
+     * that list their files, until one is built for them.
+     */
+    private transient String treeID;
+
+    /** The ID of the parent commit, null for the initial commit.*/
+    private String parentID;
+
+    /** The ID of the second parent of a merge commit, null otherwise.*/
+    private String mergeParentID;
 
     /** The initial commit which contains the
      * default information.
@@ -41,35 +94,174 @@ public class Commits implements Serializable {
     public Commits() {
         timeStamp = new Date(0);
         _message = "initial commit";
-        commitID = Utils.sha1((Object) Utils.serialize(this));
-        File committedFile = new File(".gitlet/commits/" + this.getCommitID()
-                + ".txt");
-        Utils.writeObject(committedFile, this);
+        treeID = Trees.EMPTY;
+        write();
     }
 
     /** Create Commit and a file for commit containing the
      * message of this commit. The file name is the commitID.
-     * Put the parent blob into the commit to save the snapshot
-     * and if they have the same name of the blob, replace that
-     * blob.
+     * The snapshot is the one of the parent with CHANGES applied
+     * to its tree, so only the directories holding a changed
+     * path are written again.
      * @param message The message of the commit.
-     * @param parentBlob The parentBlob to inherit from.
-     * @param blobs The new blobs to commit and save.
+     * @param parent The ID of the parent commit.
+     * @param mergeParent The ID of the merged-in commit, or null.
+     * @param changes The new blob ID of each changed path, already
+     *                saved, or null for the removed paths.
      */
-    public Commits(String message, HashMap<String, String> parentBlob,
-                   Blobs[] blobs) {
+    public Commits(String message, String parent, String mergeParent,
+                   Map<String, String> changes) {
         this._message = message;
+        this.parentID = parent;
+        this.mergeParentID = mergeParent;
         timeStamp = new Date();
-        blob.putAll(parentBlob);
-        for (Blobs value : blobs) {
-            blob.put(value.getName(), value.getId());
-            File blobFile = new File(".gitlet/blobs/" + value.getId() + ".txt");
-            Utils.writeObject(blobFile, value);
+        treeID = Trees.update(read(parent).getTree(), changes);
+        write();
+    }
+
+    /** Decode the commit ID from BYTES.
+     * @param id the full commit ID.
+     * @param bytes the encoded commit.
+     */
+    private Commits(String id, byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw Utils.error("Corrupt commit %s.", id);
+        }
+        int version = in.readInt();
+        if (version != VERSION && version != FLAT_VERSION) {
+            throw Utils.error("Commit %s has an unknown format version.", id);
+        }
+        commitID = id;
+        timeStamp = new Date(in.readLong());
+        int parents = in.readUnsignedByte();
+        if (parents > 0) {
+            parentID = readId(in);
+        }
+        if (parents > 1) {
+            mergeParentID = readId(in);
+        }
+        _message = readString(in);
+        if (version == VERSION) {
+            treeID = readId(in);
+            return;
+        }
+        int count = in.readInt();
+        Manifest.Builder builder = new Manifest.Builder();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            builder.add(name, readId(in));
+        }
+        files = builder.build();
+    }
+
+    /** Compute the ID of this commit, save it and record it
+     * in the indexes kept next to the object store.
+     */
+    private void write() {
+        byte[] bytes = encode();
+        commitID = Utils.sha1((Object) bytes);
+        ObjectStore.writeBytes(ObjectStore.COMMITS, commitID, bytes);
+        CommitIndex.add(commitID);
+        MessageIndex.add(_message, commitID);
+        CommitHeaders.add(this);
+    }
+
+    /** Return the encoding of this commit.*/
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                128 + _message.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(timeStamp.getTime());
+            out.writeByte(parentID == null ? 0
+                    : mergeParentID == null ? 1 : 2);
+            if (parentID != null) {
+                out.write(PackFile.fromHex(parentID));
+            }
+            if (parentID != null && mergeParentID != null) {
+                out.write(PackFile.fromHex(mergeParentID));
+            }
+            writeString(out, _message);
+            out.write(PackFile.fromHex(getTree()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the commit stored as BYTES under ID, in either the
+     * binary format or the serialized form of older versions.
+     * @param id the full commit ID.
+     * @param bytes the stored commit.
+     */
+    static Commits decode(String id, byte[] bytes) {
+        if (bytes.length >= 2 && (bytes[0] & 0xff) == 0xac
+                && (bytes[1] & 0xff) == 0xed) {
+            return Utils.deserialize(bytes, Commits.class);
+        }
+        try {
+            return new Commits(id, bytes);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit %s.", id);
+        }
+    }
+
+    /** Return the commit saved under ID.
+     * @param id the full commit ID.
+     */
+    static Commits read(String id) {
+        Commits result = ObjectCache.shared().get(id, Commits.class);
+        if (result == null) {
+            byte[] bytes = ObjectStore.readBytes(ObjectStore.COMMITS, id);
+            result = decode(id, bytes);
+            ObjectCache.shared().put(id, result,
+                    OBJECT_OVERHEAD + 2L * bytes.length);
         }
-        commitID = Utils.sha1((Object) Utils.serialize(this));
-        File committedFile = new File(".gitlet/commits/" + this.getCommitID()
-                + ".txt");
-        Utils.writeObject(committedFile, this);
+        return result;
+    }
+
+    /** Record PARENT and MERGEPARENT as the parents of this commit
+     * and save it again under its existing ID. Only used when
+     * upgrading repositories whose history was kept in Tree chains.
+     * @param parent The ID of the parent commit.
+     * @param mergeParent The ID of the merged-in commit, or null.
+     */
+    void setParents(String parent, String mergeParent) {
+        parentID = parent;
+        mergeParentID = mergeParent;
+        ObjectStore.writeBytes(ObjectStore.COMMITS, commitID, encode());
+    }
+
+    /** Write S to OUT as an int length and its UTF-8 bytes.
+     * @param out the destination.
+     * @param s the string.
+     */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the string written by writeString to IN.
+     * @param in the source.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Return the 20-byte ID read from IN in hex.
+     * @param in the source.
+     */
+    private static String readId(DataInputStream in) throws IOException {
+        byte[] id = new byte[PackFile.ID_BYTES];
+        in.readFully(id);
+        return PackFile.toHex(id);
     }
 
     /** Return the commit message.*/
@@ -84,13 +276,68 @@ public class Commits implements Serializable {
 
     /** Return the timeStamp in the ordered format.*/
     public String getTimeStamp() {
-        DateFormat format = new SimpleDateFormat("E MMM dd HH:mm:ss yyyy Z");
+        DateFormat format = new SimpleDateFormat(TIME_FORMAT);
         return format.format(timeStamp);
     }
 
-    /** Return the blobs.*/
-    public HashMap<String, String> getBlob() {
-        return blob;
+    /** Return the time of the commit in milliseconds.*/
+    long getTime() {
+        return timeStamp.getTime();
+    }
+
+    /** Return the ID of the parent commit, null if there is none.*/
+    public String getParentID() {
+        return parentID;
+    }
+
+    /** Return the ID of the merged-in parent, null if this
+     * is not a merge commit.*/
+    public String getMergeParentID() {
+        return mergeParentID;
+    }
+
+    /** Return the ID of the tree of the root directory, building
+     * and saving the trees first for a commit that lists its files.
+     */
+    String getTree() {
+        if (treeID == null) {
+            treeID = Trees.update(Trees.EMPTY, getBlob().toMap());
+        }
+        return treeID;
+    }
+
+    /** Return the ID of the tree of the root directory, or null for
+     * a commit that lists its files. Nothing is written.
+     */
+    String getTreeID() {
+        return treeID;
+    }
+
+    /** Return the blob ID of the file at PATH, or null if the commit
+     * has no such file. Only the trees on the path are read.
+     * @param path the path, with / between directories.
+     */
+    String blobOf(String path) {
+        if (files == null && treeID != null) {
+            return Trees.find(treeID, path);
+        }
+        return getBlob().get(path);
+    }
+
+    /** Return the blobs by path. For a commit with a tree, the
+     * manifest is built from the trees when first needed.
+     */
+    public Manifest getBlob() {
+        if (files == null && blob != null) {
+            files = Manifest.of(blob);
+        } else if (files == null) {
+            Manifest.Builder builder = new Manifest.Builder();
+            Trees.flatten(treeID, "", builder);
+            files = builder.build();
+            ObjectCache.shared().put(commitID, this,
+                    OBJECT_OVERHEAD + files.weight());
+        }
+        return files;
     }
 
 }
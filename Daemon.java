@@ -0,0 +1,290 @@
+package gitlet;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+* A resident server for one repository, so that commands do not pay
+* for starting a JVM and reloading state each time. It listens on the
+* Unix domain socket .gitlet/daemon.sock and runs the requests it
+* receives one at a time, in the repository directory, with the
+* caches of this process (open packs, the stat index, commits read
+* so far) kept warm between requests.
+*
+* A request is an int count followed by that many arguments written
+* with writeUTF. The reply is a series of frames: 'O' or 'E' followed
+* by an int length and that many bytes of standard output or error,
+* and finally 'X' followed by the int exit code. The request
+* "daemon stop" shuts the server down, and "daemon stats" prints the
+* counters of the object cache.
+*
+* Before each request the state other processes may have changed is
+* compared with what was seen after the previous one, and the caches
+* that depend on it are dropped.
+* @author Yuhan Dong
+ */
+class Daemon {
+
+    /** The socket file.*/
+    static final File SOCKET = new File(".gitlet/daemon.sock");
+
+    /** Frame holding standard output.*/
+    static final byte OUT = 'O';
+
+    /** Frame holding standard error.*/
+    static final byte ERR = 'E';
+
+    /** Frame holding the exit code.*/
+    static final byte EXIT = 'X';
+
+    /** Size of the output frames.*/
+    private static final int FRAME = 1 << 16;
+
+    /** Times, size and inode of the stat index when last seen.*/
+    private long[] indexStamp = stamp(Index.FILE);
+
+    /** Times, size and inode of the pack directory when last
+     * seen.
+     */
+    private long[] packStamp = stamp(ObjectStore.PACKS);
+
+    /** Serve requests until a stop request arrives. The trace is
+     * started again at the end, so that the summary of the daemon
+     * command is not that of the last request.
+     */
+    static void serve() {
+        if (SOCKET.exists()) {
+            try (SocketChannel running = Client.connect()) {
+                if (running != null) {
+                    System.out.println("A daemon is already running.");
+                    return;
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            SOCKET.delete();
+        }
+        Daemon daemon = new Daemon();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        try (ServerSocketChannel server = ServerSocketChannel.open(
+                StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            boolean running = true;
+            while (running) {
+                try (SocketChannel channel = server.accept()) {
+                    running = daemon.handle(channel);
+                } catch (IOException excp) {
+                    stderr.println(excp.getMessage());
+                } finally {
+                    System.setOut(stdout);
+                    System.setErr(stderr);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            SOCKET.delete();
+            Trace.begin("daemon", false);
+        }
+    }
+
+    /** Run the request read from CHANNEL and send back its output.
+     * Return false if it was a stop request. A connection closed
+     * without a request, as by a daemon checking whether this one is
+     * running, is ignored, and a request to start another daemon is
+     * refused.
+     * @param channel the connection.
+     */
+    private boolean handle(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(
+                Channels.newInputStream(channel));
+        DataOutputStream reply = new DataOutputStream(
+                Channels.newOutputStream(channel));
+        String[] args;
+        try {
+            args = new String[in.readInt()];
+        } catch (EOFException excp) {
+            return true;
+        }
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        String[] command = args.length > 0 && args[0].equals("--trace")
+            ? Arrays.copyOfRange(args, 1, args.length) : args;
+        if (command.length == 2 && command[0].equals("daemon")
+                && command[1].equals("stop")) {
+            reply.writeByte(EXIT);
+            reply.writeInt(0);
+            reply.flush();
+            return false;
+        }
+        if (command.length == 2 && command[0].equals("daemon")
+                && command[1].equals("stats")) {
+            byte[] stats = (ObjectCache.shared() + "\n").getBytes(
+                    StandardCharsets.UTF_8);
+            reply.writeByte(OUT);
+            reply.writeInt(stats.length);
+            reply.write(stats);
+            reply.writeByte(EXIT);
+            reply.writeInt(0);
+            reply.flush();
+            return true;
+        }
+        if (command.length > 0 && command[0].equals("daemon")) {
+            byte[] message = "A daemon is already running.\n".getBytes(
+                    StandardCharsets.UTF_8);
+            reply.writeByte(ERR);
+            reply.writeInt(message.length);
+            reply.write(message);
+            reply.writeByte(EXIT);
+            reply.writeInt(1);
+            reply.flush();
+            return true;
+        }
+        refresh();
+        PrintStream out = new PrintStream(new FrameStream(reply, OUT), false,
+                StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new FrameStream(reply, ERR), false,
+                StandardCharsets.UTF_8);
+        System.setOut(out);
+        System.setErr(err);
+        int code = 0;
+        try {
+            Main.main(args);
+        } catch (RuntimeException excp) {
+            err.println(excp.getMessage());
+            code = 1;
+        }
+        out.flush();
+        err.flush();
+        reply.writeByte(EXIT);
+        reply.writeInt(code);
+        reply.flush();
+        indexStamp = stamp(Index.FILE);
+        packStamp = stamp(ObjectStore.PACKS);
+        return true;
+    }
+
+    /** Drop the caches whose files were changed by another process
+     * since the last request.
+     */
+    private void refresh() {
+        if (!Arrays.equals(indexStamp, stamp(Index.FILE))) {
+            Index.reset();
+        }
+        if (!Arrays.equals(packStamp, stamp(ObjectStore.PACKS))) {
+            ObjectStore.reset();
+        }
+    }
+
+    /** Return the modification and change times in nanoseconds, the
+     * size and the inode of FILE, all 0 if it does not exist. The
+     * index is replaced by a rename when it is written, so a write by
+     * another process changes its inode even within one tick of the
+     * clock. Where the inode is not available it is 0, and only the
+     * times and size are compared.
+     * @param file the file or directory.
+     */
+    private static long[] stamp(File file) {
+        Path path = file.toPath();
+        try {
+            try {
+                Map<String, Object> attrs = Files.readAttributes(path,
+                        "unix:lastModifiedTime,ctime,size,ino");
+                return new long[] {
+                    ((FileTime) attrs.get("lastModifiedTime"))
+                        .to(TimeUnit.NANOSECONDS),
+                    ((FileTime) attrs.get("ctime")).to(TimeUnit.NANOSECONDS),
+                    (Long) attrs.get("size"), (Long) attrs.get("ino"),
+                };
+            } catch (UnsupportedOperationException excp) {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class);
+                return new long[] {
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), 0,
+                    attrs.size(), 0,
+                };
+            }
+        } catch (IOException excp) {
+            return new long[4];
+        }
+    }
+
+    /** An output stream that sends what is written to it as frames
+     * of one kind.
+     */
+    private static class FrameStream extends OutputStream {
+
+        /** The connection.*/
+        private final DataOutputStream reply;
+
+        /** The frame kind.*/
+        private final byte kind;
+
+        /** The bytes not sent yet.*/
+        private final byte[] buffer = new byte[FRAME];
+
+        /** Number of bytes in the buffer.*/
+        private int size;
+
+        /** A stream sending frames of KIND over REPLY.
+         * @param reply the connection.
+         * @param kind OUT or ERR.
+         */
+        FrameStream(DataOutputStream reply, byte kind) {
+            this.reply = reply;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                reply.writeByte(kind);
+                reply.writeInt(size);
+                reply.write(buffer, 0, size);
+                size = 0;
+            }
+            reply.flush();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+
+/**
+* A delta turns one object, the base, into another, the target. It
+* is the length of the base and of the target as varints, then a list
+* of instructions: a 0 byte followed by a varint count and that many
+* bytes to insert, or a 1 byte followed by a varint offset and count
+* of bytes to copy from the base.
+*
+* To encode, every BLOCK-byte block of the base at a multiple of BLOCK
+* is hashed into a table. A rolling hash of the target is looked up in
+* the table at each byte; a hit is checked, extended backwards and
+* forwards as far as the bytes agree, and becomes a copy. The bytes
+* between copies are inserted. Two versions of a file that differ in a
+* few places thus need a few copies and the inserted edits.
+* @author Yuhan Dong
+ */
+class Delta {
+
+    /** The length of the blocks of the base that are hashed.*/
+    static final int BLOCK = 16;
+
+    /** The multiplier of the rolling hash.*/
+    private static final int PRIME = 0x01000193;
+
+    /** PRIME to the power BLOCK - 1, to remove the oldest byte.*/
+    private static final int OUT;
+
+    static {
+        int power = 1;
+        for (int i = 1; i < BLOCK; i++) {
+            power *= PRIME;
+        }
+        OUT = power;
+    }
+
+    /** An insert instruction.*/
+    private static final int INSERT = 0;
+
+    /** A copy instruction.*/
+    private static final int COPY = 1;
+
+    /** The base.*/
+    private final byte[] base;
+
+    /** One plus the offset of a block of BASE in each slot, by hash,
+     * 0 for an empty slot.
+     */
+    private final int[] table;
+
+    /** The number of bits of a hash kept for a slot of TABLE.*/
+    private final int shift;
+
+    /** A delta encoder against BASE, which must not change while it
+     * is in use. Building it hashes every block of BASE once, so one
+     * encoder serves any number of targets.
+     * @param base the base.
+     */
+    Delta(byte[] base) {
+        this.base = base;
+        int blocks = base.length / BLOCK;
+        int size = Math.max(16, Integer.highestOneBit(blocks) * 2);
+        table = new int[size];
+        shift = 32 - Integer.numberOfTrailingZeros(size);
+        for (int i = blocks - 1; i >= 0; i--) {
+            table[slot(hash(base, i * BLOCK))] = i * BLOCK + 1;
+        }
+    }
+
+    /** Return the delta from the base of this encoder to TARGET.
+     * @param target the target.
+     */
+    byte[] encode(byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int pending = 0;
+        int i = 0;
+        int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            int candidate = table[slot(hash)] - 1;
+            if (candidate >= 0 && equal(candidate, target, i)) {
+                int start = i;
+                int from = candidate;
+                while (start > pending && from > 0
+                        && target[start - 1] == base[from - 1]) {
+                    start -= 1;
+                    from -= 1;
+                }
+                int end = i + BLOCK;
+                int to = candidate + BLOCK;
+                while (end < target.length && to < base.length
+                        && target[end] == base[to]) {
+                    end += 1;
+                    to += 1;
+                }
+                insert(out, target, pending, start);
+                out.write(COPY);
+                writeVarint(out, from);
+                writeVarint(out, end - start);
+                pending = end;
+                i = end;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+                continue;
+            }
+            if (i + BLOCK < target.length) {
+                hash = (hash - (target[i] & 0xff) * OUT) * PRIME
+                    + (target[i + BLOCK] & 0xff);
+            }
+            i += 1;
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the target that DELTA makes of BASE.
+     * @param base the base.
+     * @param delta a delta from BASE.
+     */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = new int[1];
+        if (readVarint(delta, pos) != base.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int length = 0;
+        try {
+            while (pos[0] < delta.length) {
+                int op = delta[pos[0]++];
+                if (op == INSERT) {
+                    int count = readVarint(delta, pos);
+                    System.arraycopy(delta, pos[0], result, length, count);
+                    pos[0] += count;
+                    length += count;
+                } else if (op == COPY) {
+                    int offset = readVarint(delta, pos);
+                    int count = readVarint(delta, pos);
+                    System.arraycopy(base, offset, result, length, count);
+                    length += count;
+                } else {
+                    throw Utils.error("Corrupt delta.");
+                }
+            }
+        } catch (IndexOutOfBoundsException excp) {
+            throw Utils.error("Corrupt delta.");
+        }
+        if (length != result.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return result;
+    }
+
+    /** Return true if the BLOCK bytes of the base at OFFSET are those
+     * of TARGET at START.
+     * @param offset where the block starts in the base.
+     * @param target the target.
+     * @param start where the bytes start in TARGET.
+     */
+    private boolean equal(int offset, byte[] target, int start) {
+        for (int i = 0; i < BLOCK; i++) {
+            if (base[offset + i] != target[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the slot of TABLE for HASH.
+     * @param hash the rolling hash of a block.
+     */
+    private int slot(int hash) {
+        return (hash * 0x9e3779b9) >>> shift;
+    }
+
+    /** Return the rolling hash of the BLOCK bytes of DATA at START.
+     * @param data the bytes.
+     * @param start where the block starts.
+     */
+    private static int hash(byte[] data, int start) {
+        int result = 0;
+        for (int i = start; i < start + BLOCK; i++) {
+            result = result * PRIME + (data[i] & 0xff);
+        }
+        return result;
+    }
+
+    /** Write to OUT the instruction inserting the bytes of TARGET from
+     * START up to END, if there are any.
+     * @param out the delta so far.
+     * @param target the target.
+     * @param start the first byte to insert.
+     * @param end just past the last.
+     */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int start, int end) {
+        if (start < end) {
+            out.write(INSERT);
+            writeVarint(out, end - start);
+            out.write(target, start, end - start);
+        }
+    }
+
+    /** Write the non-negative VALUE to OUT in 7-bit groups, lowest
+     * first, the high bit set on all groups but the last.
+     * @param out where to write.
+     * @param value the value.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while (value >= 0x80) {
+            out.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Return the varint of DATA at POS[0] and move POS[0] past it.
+     * @param data the delta.
+     * @param pos the position, updated.
+     */
+    private static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        for (int bits = 0; bits < 32; bits += 7) {
+            int b = data[pos[0]++];
+            result |= (b & 0x7f) << bits;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw Utils.error("Corrupt delta.");
+    }
+}
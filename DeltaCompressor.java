@@ -0,0 +1,246 @@
+package gitlet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+* Chooses which blobs of a new pack are stored as a Delta, and against
+* what. The base tried for a blob is the blob that was at the same path
+* just before the blob first appeared there, found by walking the
+* history of every branch oldest commit first and each tree once. It
+* is only tried if neither is more than SIZE_RATIO times the size of
+* the other, and the delta is only kept if it takes at most half the
+* space of the blob as stored. A base at the end of a chain of
+* MAX_DEPTH deltas is not used, and the blob starts a new chain, which
+* bounds the work of rebuilding any blob.
+*
+* Deltas go forward in history: an older version stays as it is and
+* the newer one refers to it, so a blob already packed as a delta keeps
+* its form and repacking only encodes the blobs written since, along
+* with those of packs written before deltas existed.
+* @author Yuhan Dong
+ */
+class DeltaCompressor {
+
+    /** The most deltas between a blob and the blob its chain ends at.*/
+    static final int MAX_DEPTH = 50;
+
+    /** How many times larger than the other a blob or its base may
+     * be.
+     */
+    private static final int SIZE_RATIO = 2;
+
+    /** Bytes added to the length of a cached object for the array
+     * header.
+     */
+    private static final long ARRAY_OVERHEAD = 16;
+
+    /** The IDs of the objects being packed.*/
+    private final Set<String> ids;
+
+    /** Reads an object being packed as it is stored now, by ID.*/
+    private final Function<String, byte[]> stored;
+
+    /** The new delta entries chosen so far, by ID.*/
+    private final Map<String, byte[]> deltas = new HashMap<>();
+
+    /** The base of each object looked at, null if it is whole.*/
+    private final Map<String, String> links = new HashMap<>();
+
+    /** The number of deltas in the chain of each object looked at.*/
+    private final Map<String, Integer> depths = new HashMap<>();
+
+    /** The inflated objects read so far.*/
+    private final ObjectCache contents = new ObjectCache(ObjectCache.BUDGET);
+
+    /** A compressor of the objects IDS, read by STORED.
+     * @param ids the IDs of the objects being packed.
+     * @param stored reads an object as it is stored now.
+     */
+    private DeltaCompressor(Set<String> ids,
+                            Function<String, byte[]> stored) {
+        this.ids = ids;
+        this.stored = stored;
+    }
+
+    /** Return, for each blob a branch reaches that replaced an earlier
+     * one at some path, that earlier blob, in the order the blobs first
+     * appear in the history.
+     */
+    static Map<String, String> history() {
+        Set<String> seen = new HashSet<>();
+        Deque<String> todo = new ArrayDeque<>();
+        for (String name : Tree.branchNames()) {
+            String id = Tree.branch(name).getCommitId();
+            if (seen.add(id)) {
+                todo.add(id);
+            }
+        }
+        List<Commits> commits = new ArrayList<>();
+        while (!todo.isEmpty()) {
+            Commits commit = Commits.read(todo.remove());
+            commits.add(commit);
+            for (String parent : new String[] {commit.getParentID(),
+                commit.getMergeParentID()}) {
+                if (parent != null && seen.add(parent)) {
+                    todo.add(parent);
+                }
+            }
+        }
+        Collections.reverse(commits);
+        commits.sort(Comparator.comparingLong(Commits::getTime));
+        Map<String, String> last = new HashMap<>();
+        Set<String> blobs = new HashSet<>();
+        Map<String, String> result = new LinkedHashMap<>();
+        BiConsumer<String, String> visit = (path, blob) -> {
+            String previous = last.put(path, blob);
+            if (blobs.add(blob) && previous != null) {
+                result.put(blob, previous);
+            }
+        };
+        Set<String> trees = new HashSet<>();
+        for (Commits commit : commits) {
+            if (commit.getTreeID() == null) {
+                Manifest files = commit.getBlob();
+                for (int i = 0; i < files.size(); i++) {
+                    visit.accept(files.path(i), files.id(i));
+                }
+            } else {
+                Trees.walk(commit.getTreeID(), "", trees, visit);
+            }
+        }
+        return result;
+    }
+
+    /** Return the delta entries of those of the blobs CANDIDATES
+     * among IDS that are worth storing as deltas, against the earlier
+     * blob HISTORY gives for each, by ID. STORED reads the blobs as
+     * they are stored now, and only a few are held at a time. A
+     * candidate in BASES, already the base of a delta, is left whole.
+     * @param ids the IDs of the blobs being packed.
+     * @param stored reads a blob being packed as it is stored now.
+     * @param bases the IDs of the blobs that are bases of deltas.
+     * @param candidates the IDs of the blobs that may become deltas.
+     * @param history the earlier blob of each blob, from history().
+     */
+    static Map<String, byte[]> compress(Set<String> ids,
+                                        Function<String, byte[]> stored,
+                                        Set<String> bases,
+                                        Set<String> candidates,
+                                        Map<String, String> history) {
+        DeltaCompressor compressor = new DeltaCompressor(ids, stored);
+        for (Map.Entry<String, String> blob : history.entrySet()) {
+            String id = blob.getKey();
+            if (candidates.contains(id) && !bases.contains(id)
+                    && ids.contains(id) && ids.contains(blob.getValue())) {
+                compressor.deltify(id, blob.getValue());
+            }
+        }
+        return compressor.deltas;
+    }
+
+    /** Store the blob ID as a delta against BASE if that is worth it.
+     * @param id the ID of the blob.
+     * @param base the ID of the earlier blob.
+     */
+    private void deltify(String id, String base) {
+        int depth = depth(base);
+        if (depth >= MAX_DEPTH || chained(base, id)) {
+            return;
+        }
+        byte[] target = content(id);
+        byte[] source = content(base);
+        if (target == null || source == null
+                || target.length > SIZE_RATIO * (long) source.length
+                || source.length > SIZE_RATIO * (long) target.length) {
+            return;
+        }
+        byte[] entry = PackFile.deltaEntry(base,
+                new Delta(source).encode(target));
+        if (entry.length > stored.apply(id).length / 2) {
+            return;
+        }
+        deltas.put(id, entry);
+        links.put(id, base);
+        depths.put(id, depth + 1);
+    }
+
+    /** Return the number of deltas in the chain of the object ID.
+     * @param id the ID of an object being packed.
+     */
+    private int depth(String id) {
+        Integer result = depths.get(id);
+        if (result == null) {
+            String base = base(id);
+            result = base == null ? 0 : depth(base) + 1;
+            depths.put(id, result);
+        }
+        return result;
+    }
+
+    /** Return true if the chain of deltas of the object ID passes
+     * through the object TARGET.
+     * @param id the ID of an object being packed.
+     * @param target the ID of another.
+     */
+    private boolean chained(String id, String target) {
+        for (String base = id; base != null;
+             base = base(base)) {
+            if (base.equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the object ID as it will be stored.
+     * @param id the ID of an object being packed.
+     */
+    private byte[] entry(String id) {
+        byte[] result = deltas.get(id);
+        return result != null ? result : stored.apply(id);
+    }
+
+    /** Return the ID of the base of the object ID, or null if it will
+     * be stored whole.
+     * @param id the ID of an object being packed.
+     */
+    private String base(String id) {
+        if (!links.containsKey(id)) {
+            links.put(id, PackFile.baseOf(entry(id)));
+        }
+        return links.get(id);
+    }
+
+    /** Return the object ID inflated, or null if it was serialized
+     * by an older version and is not compressed.
+     * @param id the ID of an object being packed.
+     */
+    private byte[] content(String id) {
+        byte[] result = contents.get(id, byte[].class);
+        if (result != null) {
+            return result;
+        }
+        byte[] entry = entry(id);
+        String base = PackFile.baseOf(entry);
+        if (base != null) {
+            result = Delta.apply(content(base), PackFile.deltaOf(entry));
+        } else if ((entry[0] & 0xff) == 0xac) {
+            return null;
+        } else {
+            result = PackFile.inflate(entry, 0);
+        }
+        contents.put(id, result, ARRAY_OVERHEAD + result.length);
+        return result;
+    }
+}
@@ -0,0 +1,149 @@
+package gitlet;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+* Deletes the objects that no branch can reach any more: commits
+* orphaned by reset or by deleted branches, the blobs only they used
+* and the chunks only those blobs used. Marking walks the history from
+* every branch one generation of commits at a time, reading the
+* commits of a generation in parallel, so it reads each reachable
+* commit once, and each reachable tree once however many commits
+* share it. The objects that were not marked are deleted unless they
+* are staged, younger than the grace period or reachable from a commit
+* that is, and the marked ones are repacked. The indexes built from
+* the set of commits are then rebuilt.
+* @author Yuhan Dong
+ */
+class GarbageCollector {
+
+    /** The default grace period in milliseconds: two weeks.*/
+    static final long GRACE = 14L * 24 * 60 * 60 * 1000;
+
+    /** Delete the unreachable objects older than GRACE milliseconds,
+     * repack the rest and return the number of objects deleted.
+     * @param grace the grace period in milliseconds.
+     */
+    static int collect(long grace) {
+        long cutoff = System.currentTimeMillis() - grace;
+        Set<String> reachable;
+        Set<String> spared;
+        Trace.Phase phase = Trace.phase("mark");
+        try {
+            List<String> branches = new ArrayList<>();
+            for (String name : Tree.branchNames()) {
+                branches.add(Tree.branch(name).getCommitId());
+            }
+            reachable = mark(branches);
+            Staging staging = Staging.load();
+            List<String> staged = new ArrayList<>();
+            for (String name : staging.added()) {
+                staged.add(staging.get(name));
+            }
+            reachable.addAll(staged);
+            reachable.addAll(chunks(staged));
+            List<String> recent = ObjectStore.recentIds(ObjectStore.COMMITS,
+                    cutoff);
+            recent.removeAll(reachable);
+            spared = mark(recent);
+        } finally {
+            phase.end();
+        }
+        int dropped;
+        phase = Trace.phase("sweep");
+        try {
+            dropped = ObjectStore.repack(reachable, spared, cutoff);
+            deleteTemporary(new File(".gitlet"), cutoff);
+        } finally {
+            phase.end();
+        }
+        if (dropped > 0) {
+            CommitIndex.rebuild();
+            MessageIndex.rebuild();
+            CommitHeaders.rebuild();
+            CommitGraph.FILE.delete();
+        }
+        CommitGraph graph = CommitGraph.load();
+        for (String id : ObjectStore.ids(ObjectStore.COMMITS)) {
+            graph.position(id);
+        }
+        graph.save();
+        return dropped;
+    }
+
+    /** Return the IDs of the commits in ROOTS and of every commit,
+     * tree, blob and chunk reachable from them.
+     * @param roots the IDs of the commits to start from.
+     */
+    static Set<String> mark(List<String> roots) {
+        Set<String> commits = ConcurrentHashMap.newKeySet();
+        Set<String> trees = ConcurrentHashMap.newKeySet();
+        Set<String> blobs = ConcurrentHashMap.newKeySet();
+        List<String> generation = new ArrayList<>();
+        for (String id : roots) {
+            if (commits.add(id)) {
+                generation.add(id);
+            }
+        }
+        while (!generation.isEmpty()) {
+            generation = generation.parallelStream().flatMap(id -> {
+                Commits commit = Commits.read(id);
+                if (commit.getTreeID() == null) {
+                    Manifest files = commit.getBlob();
+                    for (int i = 0; i < files.size(); i++) {
+                        blobs.add(files.id(i));
+                    }
+                } else {
+                    Trees.mark(commit.getTreeID(), trees, blobs);
+                }
+                return Stream.of(commit.getParentID(),
+                        commit.getMergeParentID());
+            }).filter(Objects::nonNull).filter(commits::add)
+                .collect(Collectors.toList());
+        }
+        commits.addAll(trees);
+        commits.addAll(blobs);
+        commits.addAll(chunks(blobs));
+        return commits;
+    }
+
+    /** Return the IDs of the chunks of the blobs in BLOBS. The blobs
+     * are only read if the store holds any chunk.
+     * @param blobs the blob IDs.
+     */
+    private static Set<String> chunks(Collection<String> blobs) {
+        Set<String> result = ConcurrentHashMap.newKeySet();
+        if (!ObjectStore.ids(ObjectStore.CHUNKS).isEmpty()) {
+            blobs.parallelStream().forEach(id ->
+                    result.addAll(Blobs.chunksOf(id)));
+        }
+        return result;
+    }
+
+    /** Delete the temporary files below DIR that are older than
+     * CUTOFF, left behind by writes that were interrupted.
+     * @param dir the directory to search.
+     * @param cutoff the time in milliseconds.
+     */
+    private static void deleteTemporary(File dir, long cutoff) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.getName().endsWith(".tmp")
+                    && child.lastModified() < cutoff) {
+                Utils.deleteRecursively(child);
+            } else if (child.isDirectory()) {
+                deleteTemporary(child, cutoff);
+            }
+        }
+    }
+}
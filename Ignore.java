@@ -0,0 +1,276 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* The patterns of .gitletignore, naming the working files that are
+* never untracked: build outputs, logs and the like. Each line is a
+* glob in the syntax of .gitignore. Blank lines and lines starting
+* with # are skipped. A pattern ending in / only matches directories.
+* A pattern with a / anywhere else is matched against the whole path
+* from the working directory, and any other pattern against the last
+* name of the path at any depth. A * matches within one name, ** across
+* names, and a pattern starting with ! brings back what an earlier one
+* ignored. When several patterns match a path the last one decides.
+*
+* All the patterns are compiled into a single regular expression for
+* files and one for directories, the alternatives in reverse order so
+* the first to match is the last pattern, and a path is looked up with
+* one match. The walk of the working tree asks about each directory
+* before entering it and skips an ignored one whole, so a large build
+* directory costs one lookup.
+* @author Yuhan Dong
+ */
+class Ignore {
+
+    /** The ignore file.*/
+    static final File FILE = new File(".gitletignore");
+
+    /** The rules with no patterns.*/
+    private static final Ignore NONE = new Ignore(new ArrayList<>());
+
+    /** Matches the paths of ignored files, null if no rule applies to
+     * files.
+     */
+    private final Pattern files;
+
+    /** Matches the paths of ignored directories, null if there are no
+     * rules.
+     */
+    private final Pattern dirs;
+
+    /** Whether the pattern of each group of FILES is negated.*/
+    private final boolean[] fileNegated;
+
+    /** Whether the pattern of each group of DIRS is negated.*/
+    private final boolean[] dirNegated;
+
+    /** True if any pattern is negated.*/
+    private final boolean negations;
+
+    /** The rules of LINES, the lines of an ignore file.
+     * @param lines the patterns, one per line.
+     */
+    private Ignore(List<String> lines) {
+        StringBuilder filePattern = new StringBuilder();
+        StringBuilder dirPattern = new StringBuilder();
+        List<Boolean> fileSigns = new ArrayList<>();
+        List<Boolean> dirSigns = new ArrayList<>();
+        boolean negated = false;
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            boolean negate = line.startsWith("!");
+            if (negate) {
+                line = line.substring(1);
+                negated = true;
+            }
+            boolean dirOnly = line.endsWith("/");
+            while (line.endsWith("/")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            String regex;
+            if (line.indexOf('/') >= 0) {
+                regex = toRegex(line.startsWith("/")
+                        ? line.substring(1) : line);
+            } else {
+                regex = "(?:.*/)?" + toRegex(line);
+            }
+            append(dirPattern, regex);
+            dirSigns.add(negate);
+            if (!dirOnly) {
+                append(filePattern, regex);
+                fileSigns.add(negate);
+            }
+        }
+        files = fileSigns.isEmpty() ? null
+            : Pattern.compile(filePattern.toString());
+        dirs = dirSigns.isEmpty() ? null
+            : Pattern.compile(dirPattern.toString());
+        fileNegated = toArray(fileSigns);
+        dirNegated = toArray(dirSigns);
+        negations = negated;
+    }
+
+    /** Return the rules of the ignore file, or rules that ignore
+     * nothing if there is none.
+     */
+    static Ignore load() {
+        if (!FILE.isFile()) {
+            return NONE;
+        }
+        try {
+            return new Ignore(Files.readAllLines(FILE.toPath()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true if PATH is ignored.
+     * @param path the path from the working directory, with / between
+     * directories.
+     * @param dir true if PATH is a directory.
+     */
+    boolean ignored(String path, boolean dir) {
+        Pattern pattern = dir ? dirs : files;
+        if (pattern == null) {
+            return false;
+        }
+        Matcher matcher = pattern.matcher(path);
+        if (!matcher.matches()) {
+            return false;
+        } else if (!negations) {
+            return true;
+        }
+        boolean[] negated = dir ? dirNegated : fileNegated;
+        for (int group = 1; group <= negated.length; group++) {
+            if (matcher.start(group) >= 0) {
+                return !negated[group - 1];
+            }
+        }
+        return true;
+    }
+
+    /** Return the paths of the plain files below the directory DIR of
+     * the working tree that are not ignored, sorted. Ignored
+     * directories below DIR are not entered, and neither is .gitlet.
+     * DIR itself is walked even if it is ignored.
+     * @param dir the path of the directory from the working
+     * directory, empty for the working directory itself.
+     */
+    List<String> files(String dir) {
+        Path start = Paths.get(dir.isEmpty() ? "." : dir);
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        List<String> result = new ArrayList<>();
+        if (!Files.isDirectory(start)) {
+            return result;
+        }
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path,
+                        BasicFileAttributes attrs) {
+                    if (path.equals(start)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String name = prefix + relative(start, path);
+                    if (path.getFileName().toString().equals(".gitlet")
+                            || ignored(name, true)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path,
+                        BasicFileAttributes attrs) {
+                    String name = prefix + relative(start, path);
+                    if ((attrs.isRegularFile() || attrs.isSymbolicLink()
+                            && Files.isRegularFile(path))
+                            && !ignored(name, false)) {
+                        result.add(name);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path,
+                        IOException excp) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return PATH relative to START, with / between directories.
+     * @param start the directory walked.
+     * @param path a path below it.
+     */
+    private static String relative(Path start, Path path) {
+        return start.relativize(path).toString()
+            .replace(File.separatorChar, '/');
+    }
+
+    /** Add REGEX to the alternatives in PATTERN as a group.
+     * @param pattern the alternatives so far.
+     * @param regex the new alternative.
+     */
+    private static void append(StringBuilder pattern, String regex) {
+        if (pattern.length() > 0) {
+            pattern.append('|');
+        }
+        pattern.append('(').append(regex).append(')');
+    }
+
+    /** Return the regular expression matching the paths that the
+     * glob GLOB matches, with no capturing groups.
+     * @param glob a pattern of the ignore file.
+     */
+    private static String toRegex(String glob) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                result.append("(?:.*/)?");
+                i += 3;
+                continue;
+            } else if (glob.startsWith("**", i)) {
+                result.append(".*");
+                i += 2;
+                continue;
+            } else if (c == '*') {
+                result.append("[^/]*");
+            } else if (c == '?') {
+                result.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                result.append('[').append(set.replace("\\", "\\\\")
+                        .replace("[", "\\[")).append(']');
+                i = end;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                i += 1;
+                result.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+            } else {
+                result.append(Pattern.quote(String.valueOf(c)));
+            }
+            i += 1;
+        }
+        return result.toString();
+    }
+
+    /** Return the values of LIST.
+     * @param list the booleans.
+     */
+    private static boolean[] toArray(List<Boolean> list) {
+        boolean[] result = new boolean[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,265 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+* The stat cache of the working directory, kept in .gitlet/index.
+* For each file whose blob ID has been computed it records the size,
+* modification time and inode the file had at that moment. As long as
+* those are unchanged the recorded ID is trusted and the file is not
+* read again. Entries whose modification time is not older than the
+* index file itself are "racy": the file may have changed within the
+* same clock tick, so they are always hashed again.
+*
+* The file is the magic GIND, a version, the entry count and then
+* each entry as its path, size, modification time in nanoseconds,
+* inode and the 20-byte blob ID.
+* @author Yuhan Dong
+ */
+class Index {
+
+    /** The index file.*/
+    static final File FILE = new File(".gitlet/index");
+
+    /** Magic number of the index file.*/
+    private static final int MAGIC = 0x47494e44;
+
+    /** Format version of the index file.*/
+    private static final int VERSION = 1;
+
+    /** The stat data and blob ID of one file.*/
+    private static class Entry {
+        /** Size in bytes.*/
+        private final long size;
+        /** Modification time in nanoseconds.*/
+        private final long mtime;
+        /** Inode number, 0 where the file system has none.*/
+        private final long inode;
+        /** The blob ID of the content.*/
+        private final String id;
+
+        /** An entry for the stat data SIZE, MTIME, INODE and blob ID.
+         * @param size the size.
+         * @param mtime the modification time.
+         * @param inode the inode.
+         * @param id the blob ID.
+         */
+        Entry(long size, long mtime, long inode, String id) {
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+            this.id = id;
+        }
+
+        /** Return true if OTHER has the same stat data.
+         * @param other the current stat data.
+         */
+        boolean sameStat(Entry other) {
+            return size == other.size && mtime == other.mtime
+                    && inode == other.inode;
+        }
+    }
+
+    /** The index of this process, null until it is first needed.*/
+    private static Index current;
+
+    /** The entries by path.*/
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Modification time of the index file when it was last loaded
+     * or saved. Entries older than this are trusted.
+     */
+    private long loadedAt = Long.MIN_VALUE;
+
+    /** True if entries changed since the index was loaded.*/
+    private volatile boolean dirty;
+
+    /** Return the index of the repository, loading it if needed.*/
+    static synchronized Index get() {
+        if (current == null) {
+            current = new Index();
+            current.load();
+        }
+        return current;
+    }
+
+    /** Forget the index of this process, so that it is read again
+     * when next needed.
+     */
+    static synchronized void reset() {
+        current = null;
+    }
+
+    /** Read the index file, if there is one.*/
+    private void load() {
+        if (!FILE.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(FILE.toPath())))) {
+            loadedAt = Files.getLastModifiedTime(FILE.toPath())
+                    .to(TimeUnit.NANOSECONDS);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            byte[] id = new byte[PackFile.ID_BYTES];
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                long inode = in.readLong();
+                in.readFully(id);
+                entries.put(path, new Entry(size, mtime, inode,
+                        PackFile.toHex(id)));
+            }
+        } catch (IOException excp) {
+            entries.clear();
+        }
+    }
+
+    /** Write the index file if any entry changed.*/
+    void save() {
+        if (!dirty) {
+            return;
+        }
+        File tmp = Utils.temporary(FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(
+                            tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeLong(entry.inode);
+                    out.write(PackFile.fromHex(entry.id));
+                }
+            }
+            Files.move(tmp.toPath(), FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            loadedAt = Files.getLastModifiedTime(FILE.toPath())
+                    .to(TimeUnit.NANOSECONDS);
+            dirty = false;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the blob ID of the working file FILE tracked as NAME,
+     * or null if FILE does not exist. The file is only hashed if its
+     * stat data differs from the recorded one or the entry is racy.
+     * @param name the path of the file in the repository.
+     * @param file the working file.
+     */
+    String idOf(String name, File file) {
+        Entry now = stat(file);
+        if (now == null) {
+            forget(name);
+            return null;
+        }
+        Entry old = entries.get(name);
+        if (old != null && old.sameStat(now) && old.mtime < loadedAt) {
+            return old.id;
+        }
+        String id = Utils.sha1(file);
+        entries.put(name, new Entry(now.size, now.mtime, now.inode, id));
+        dirty = true;
+        return id;
+    }
+
+    /** Return the blob ID of the working file FILE tracked as NAME,
+     * or null if FILE does not exist, and make sure the store has
+     * the blob. When the recorded ID is trusted and its blob is
+     * stored the file is not read; otherwise it is hashed while it
+     * is saved, in a single pass.
+     * @param name the path of the file in the repository.
+     * @param file the working file.
+     */
+    String store(String name, File file) {
+        Entry now = stat(file);
+        if (now == null) {
+            forget(name);
+            return null;
+        }
+        Entry old = entries.get(name);
+        if (old != null && old.sameStat(now) && old.mtime < loadedAt
+                && ObjectStore.contains(ObjectStore.BLOBS, old.id)) {
+            return old.id;
+        }
+        String id = Blobs.store(file);
+        entries.put(name, new Entry(now.size, now.mtime, now.inode, id));
+        dirty = true;
+        return id;
+    }
+
+    /** Record that the working file FILE tracked as NAME was just
+     * written with the content of the blob ID.
+     * @param name the path of the file in the repository.
+     * @param file the working file.
+     * @param id the blob ID.
+     */
+    void record(String name, File file, String id) {
+        Entry now = stat(file);
+        if (now != null) {
+            entries.put(name, new Entry(now.size, now.mtime, now.inode, id));
+            dirty = true;
+        }
+    }
+
+    /** Drop the entry of NAME.
+     * @param name the path of the file in the repository.
+     */
+    void forget(String name) {
+        if (entries.remove(name) != null) {
+            dirty = true;
+        }
+    }
+
+    /** Return the stat data of FILE with no ID, or null if it does
+     * not exist. The inode is read where the platform offers it.
+     * @param file the working file.
+     */
+    private static Entry stat(File file) {
+        Trace.stat();
+        Path path = file.toPath();
+        try {
+            try {
+                Map<String, Object> attrs = Files.readAttributes(path,
+                        "unix:size,lastModifiedTime,ino");
+                return new Entry((Long) attrs.get("size"),
+                        ((FileTime) attrs.get("lastModifiedTime"))
+                                .to(TimeUnit.NANOSECONDS),
+                        (Long) attrs.get("ino"), null);
+            } catch (UnsupportedOperationException excp) {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class);
+                return new Entry(attrs.size(),
+                        attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        0, null);
+            }
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package gitlet;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/**
+* The node of the old commit graph, where each branch file under
+* .gitlet/tree held a serialized chain of Tree objects linking
+* every commit to its parents. It is only read, to move such
+* repositories to the refs and parent-ID layout.
+* @author Yuhan Dong
+ */
+class LegacyTree implements Serializable {
+
+    /** The value of the old Tree class.*/
+    private static final long serialVersionUID = 680789140024104943L;
+
+    /** The directory of the old layout.*/
+    static final File DIR = new File(".gitlet/tree");
+
+    /** The branch name.*/
+    private String branchName;
+
+    /** The parent tree.*/
+    private LegacyTree parent;
+
+    /** The branches known when the node was written.*/
+    private HashMap<String, LegacyTree> branches;
+
+    /** The commitID of the head of the tree.*/
+    private String commitId;
+
+    /** The parent created by merge.*/
+    private LegacyTree mergeParent;
+
+    /** Return the old node saved in FILE. The stream names the
+     * class gitlet.Tree, which is swapped for this class.
+     * @param file the file holding a serialized Tree.
+     */
+    static LegacyTree read(File file) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new FileInputStream(file)) {
+                @Override
+                protected ObjectStreamClass readClassDescriptor()
+                        throws IOException, ClassNotFoundException {
+                    ObjectStreamClass desc = super.readClassDescriptor();
+                    if (desc.getName().equals("gitlet.Tree")) {
+                        return ObjectStreamClass.lookup(LegacyTree.class);
+                    }
+                    return desc;
+                }
+            }) {
+            return (LegacyTree) in.readObject();
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true if the repository still uses the old layout.*/
+    static boolean needsMigration() {
+        return DIR.isDirectory() && !Tree.HEAD.exists();
+    }
+
+    /** Convert the old layout. Every branch file becomes a ref
+     * holding its head commit ID, the current branch is written
+     * to HEAD, and the parents found in the Tree chains are stored
+     * in the commits, which keep their IDs. Finally .gitlet/tree
+     * is deleted.
+     */
+    static void migrate() {
+        Tree.REFS.mkdirs();
+        ArrayDeque<LegacyTree> pending = new ArrayDeque<>();
+        for (String name : Utils.plainFilenamesIn(DIR)) {
+            LegacyTree node = read(new File(DIR, name));
+            pending.add(node);
+            if (!name.equals("treeNode")) {
+                new Tree(name, node.commitId).save();
+            }
+        }
+        File resets = new File(DIR, "reset");
+        if (resets.isDirectory()) {
+            for (String name : Utils.plainFilenamesIn(resets)) {
+                pending.add(read(new File(resets, name)));
+            }
+        }
+        LegacyTree head = read(new File(DIR, "treeNode"));
+        HashSet<String> seen = new HashSet<>();
+        while (!pending.isEmpty()) {
+            LegacyTree node = pending.remove();
+            if (!seen.add(node.commitId)) {
+                continue;
+            }
+            String parentId = commitOf(node.parent, node.commitId);
+            String mergeId = commitOf(node.mergeParent, node.commitId);
+            File file = new File(".gitlet/commits/" + node.commitId + ".txt");
+            if (parentId != null && file.exists()) {
+                Commits commit = Commits.read(node.commitId);
+                if (commit.getParentID() == null) {
+                    commit.setParents(parentId, mergeId);
+                }
+            }
+            if (node.parent != null) {
+                pending.add(node.parent);
+            }
+            if (node.mergeParent != null) {
+                pending.add(node.mergeParent);
+            }
+        }
+        new Tree(head.branchName, head.commitId).makeHead();
+        Utils.deleteRecursively(DIR);
+    }
+
+    /** Return the commit ID of NODE, or null if NODE is missing
+     * or names the same commit as CHILD.
+     * @param node the parent node.
+     * @param child the commit ID of the child.
+     */
+    private static String commitOf(LegacyTree node, String child) {
+        if (node == null || node.commitId.equals(child)) {
+            return null;
+        }
+        return node.commitId;
+    }
+}
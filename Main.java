@@ -1,8 +1,25 @@
 package gitlet;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Yuhan Dong
@@ -12,13 +29,35 @@ public class Main {
     /**The path to the Current Working Directory.*/
     private static final File CWD = new File(".");
 
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+    /**The most threads writing working files at once.*/
+    private static final int CHECKOUT_THREADS = 8;
+
+    /** Usage: java gitlet.Main [--trace] ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> .... With --trace, counters and phase
+     *  timings of the command are printed to standard error. */
     public static void main(String... args) {
+        boolean trace = args.length > 0 && args[0].equals("--trace");
+        if (trace) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         if (args.length == 0) {
             System.out.println("Please enter a command.");
             return;
         }
+        Trace.begin(args[0], trace);
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            Trace.end(System.err);
+        }
+    }
+
+    /** Run the command in ARGS[0] with the operands that follow.
+     * @param args the command and its operands.
+     */
+    public static void run(String... args) {
         switch (args[0]) {
         case "init":
             init();
@@ -67,6 +106,18 @@ public class Main {
             validateDirectory();
             merge(args);
             break;
+        case "repack":
+            validateDirectory();
+            repack(args);
+            break;
+        case "gc":
+            validateDirectory();
+            gc(args);
+            break;
+        case "daemon":
+            validateDirectory();
+            Daemon.serve();
+            break;
         default:
             System.out.println("No command with that name exists.");
             return;
@@ -87,59 +138,135 @@ public class Main {
             new File(".gitlet").mkdirs();
             new File(".gitlet/blobs").mkdirs();
             new File(".gitlet/commits").mkdirs();
-            new File(".gitlet/tree").mkdirs();
-            new File(".gitlet/tree/reset").mkdirs();
-            new File(".gitlet/staging").mkdirs();
-            new File(".gitlet/staging/add").mkdirs();
-            new File(".gitlet/staging/rm").mkdirs();
+            new File(".gitlet/refs").mkdirs();
         }
         Tree initialTree = new Tree();
     }
 
-    /**Adds a copy of the file to the staging folder,
-     * If length < 2, exists with error message. If the
-     * added file is identical to the current commit,
-     * do not stage the file.
+    /**Saves the blobs of the files named in ARGS and stages
+     * their IDs. Each operand is a file, a directory, which
+     * adds every file below it, or a glob such as *.txt or
+     * src/**.java, matched against the paths of the working
+     * files. Directories and globs skip the files ignored by
+     * .gitletignore; a file named on its own is added even if
+     * it is ignored. If any operand names no file, nothing is staged
+     * and an error message is printed. A file identical to the
+     * current commit is not staged. The blob IDs come from the
+     * index, so an unchanged file is not read, and a changed
+     * one is read once, hashing it as it is saved; the files
+     * are hashed in parallel. The head commit and the staging
+     * area are read once for the whole batch.
      * @param args The string input of the user.
      */
     public static void add(String[] args) {
         validateDirectory();
-        if (args.length != 2) {
+        if (args.length < 2) {
             System.out.println("Incorrect operands.");
             return;
         }
-        if (new File(args[1]).exists()) {
-            File add = new File(".gitlet/staging/add/" + args[1]);
-            File file = new File(CWD + "/" + args[1]);
-            Utils.writeContents(add, Utils.readContentsAsString(file));
-            Blobs blob = new Blobs(args[1], add);
-            Tree treeNode = Utils.readObject(
-                    new File(".gitlet/tree/treeNode"), Tree.class);
-            if (new File(".gitlet/commits/"
-                    + treeNode.getCommitId() + ".txt").exists()) {
-                if (new File(".gitlet/staging/rm/" + args[1]).exists()) {
-                    new File(".gitlet/staging/rm/" + args[1]).delete();
+        TreeSet<String> names = new TreeSet<>();
+        Ignore ignore = Ignore.load();
+        List<String> working = null;
+        for (int i = 1; i < args.length; i++) {
+            List<String> matched;
+            if (isGlob(args[i])) {
+                if (working == null) {
+                    working = ignore.files("");
                 }
-                Commits headCommit = treeNode.getCommit();
-                for (String fileName: headCommit.getBlob().keySet()) {
-                    if (fileName.equals(args[1]) && blob.getId().equals(
-                            headCommit.getBlob().get(fileName))) {
-                        add.delete();
-                    }
+                matched = glob(args[i], working);
+            } else {
+                matched = pathspec(args[i], ignore);
+            }
+            if (matched.isEmpty()) {
+                System.out.println("File does not exist.");
+                return;
+            }
+            names.addAll(matched);
+        }
+        Map<String, String> ids = new ConcurrentHashMap<>();
+        Trace.Phase phase = Trace.phase("store");
+        try {
+            Index index = Index.get();
+            names.parallelStream().forEach(name -> {
+                String id = index.store(name, new File(CWD, name));
+                if (id != null) {
+                    ids.put(name, id);
                 }
+            });
+            index.save();
+        } finally {
+            phase.end();
+        }
+        Commits head = getTreeNode().getCommit();
+        Staging staging = Staging.load();
+        for (String name : names) {
+            String id = ids.get(name);
+            if (id == null || id.equals(head.blobOf(name))) {
+                staging.unstage(name);
+            } else {
+                staging.add(name, id);
             }
-        } else {
-            System.out.println("File does not exist.");
-            return;
         }
+        staging.save();
+    }
+
+    /**Return true if ARG is a glob rather than a path.
+     * @param arg an operand of add.
+     */
+    private static boolean isGlob(String arg) {
+        return arg.indexOf('*') >= 0 || arg.indexOf('?') >= 0
+                || arg.indexOf('[') >= 0 || arg.indexOf('{') >= 0;
+    }
+
+    /**Return the paths in WORKING that match the glob PATTERN,
+     * which is relative to the working directory. A * matches
+     * within one directory and ** across directories.
+     * @param pattern the glob.
+     * @param working the paths of the working files, sorted.
+     */
+    private static List<String> glob(String pattern, List<String> working) {
+        if (pattern.startsWith("./")) {
+            pattern = pattern.substring(2);
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+                "glob:" + pattern);
+        List<String> result = new ArrayList<>();
+        for (String name : working) {
+            if (matcher.matches(Paths.get(name))) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**Return the paths of the working files ARG names: the
+     * file itself, or every file below it that IGNORE does not
+     * ignore if it is a directory. The list is empty if there
+     * is no such file.
+     * @param arg a path given by the user.
+     * @param ignore the ignore rules.
+     */
+    private static List<String> pathspec(String arg, Ignore ignore) {
+        String name = repoPath(arg);
+        if (name == null) {
+            return new ArrayList<>();
+        }
+        File file = new File(CWD, name);
+        if (file.isFile()) {
+            return List.of(name);
+        }
+        return ignore.files(name);
     }
 
     /** Saves a snapshot of tracked files in the
-     * current commit. The staging/add directory
+     * current commit. The staging area
      * will be cleared after a commit. Commit will
      * never remove, add, or change files in the working
      * directory. Head of the commit will become the
-     * current commit right now.
+     * current commit right now. Only the staged paths are
+     * looked at, not every file of the parent commit, and
+     * their blobs were saved by add, so no file content is
+     * read.
      * @param args The commit message.
      */
     public static void commit(String[] args) {
@@ -147,8 +274,7 @@ public class Main {
             System.out.println("Incorrect operands.");
             return;
         }
-        if (new File(".gitlet/staging/add").list().length == 0
-                && new File(".gitlet/staging/rm").list().length == 0) {
+        if (stagingEmpty()) {
             System.out.println("No changes added to the commit.");
             return;
         } else if (args[1].length() == 0) {
@@ -156,27 +282,27 @@ public class Main {
             return;
         }
         String message = args[1];
-        String[] fileContained = new File(".gitlet/staging/add").list();
-        String[] stagedRemoval = new File(".gitlet/staging/rm").list();
-        Blobs[] blobs = new Blobs[fileContained.length];
-        for (int i = 0; i < fileContained.length; i++) {
-            File file = new File(".gitlet/staging/add/" + fileContained[i]);
-            blobs[i] = new Blobs(fileContained[i], file);
-            file.delete();
-        }
-        Tree treeNode = Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
-        HashMap<String, String> parentAfterRM =
-                new HashMap<String, String>();
-        parentAfterRM.putAll(treeNode.getCommit().getBlob());
-        for (int i = 0; i < stagedRemoval.length; i++) {
-            parentAfterRM.remove(stagedRemoval[i]);
-            File rm = new File(".gitlet/staging/rm/" + stagedRemoval[i]);
-            rm.delete();
-        }
-        Commits head = new Commits(
-                message, parentAfterRM, blobs);
-        new Tree(treeNode.getBranchName(), treeNode, head.getCommitID());
+        Tree treeNode = getTreeNode();
+        Commits head = new Commits(message, treeNode.getCommitId(), null,
+                stagedChanges());
+        treeNode.setCommitId(head.getCommitID());
+    }
+
+    /**Clear the staging area and return what was staged.
+     * @return the blob ID of each file staged for addition, and
+     * null for each file staged for removal.
+     */
+    private static Map<String, String> stagedChanges() {
+        Staging staging = Staging.load();
+        Map<String, String> changes = staging.changes();
+        staging.clear();
+        staging.save();
+        return changes;
+    }
+
+    /**Return true if no file is staged for addition or removal.*/
+    private static boolean stagingEmpty() {
+        return Staging.load().isEmpty();
     }
 
     /**Unstage the file if it is currently staged
@@ -191,21 +317,21 @@ public class Main {
             System.out.println("Incorrect operands.");
             return;
         }
-        Tree treeNode = Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
+        Tree treeNode = getTreeNode();
         Commits currentCommit = treeNode.getCommit();
-        File removal = new File(".gitlet/staging/add/" + args[1]);
-        if (removal.exists()) {
-            removal.delete();
-        } else if (currentCommit.getBlob().containsKey(args[1])) {
-            File stageRemoval = new File(".gitlet/staging/rm/" + args[1]);
-            Utils.writeObject(stageRemoval,
-                    currentCommit.getBlob().get(args[1]));
-            new File(CWD + "/" + args[1]).delete();
+        String name = repoPath(args[1]);
+        String id = name == null ? null : currentCommit.blobOf(name);
+        Staging staging = Staging.load();
+        if (name != null && staging.isAdded(name)) {
+            staging.unstage(name);
+        } else if (id != null) {
+            staging.remove(name);
+            deletePath(CWD, name);
         } else {
             System.out.println("No reason to remove the file.");
             return;
         }
+        staging.save();
     }
 
     /**If arg.length == 3, then checkout the file given and look
@@ -226,28 +352,21 @@ public class Main {
         Tree treeNode = getTreeNode();
         if (args.length == 3 && args[1].equals("--")) {
             Commits head = treeNode.getCommit();
-            HashMap<String, String> blobs = head.getBlob();
-            if (blobs.containsKey(args[2])) {
-                String id = blobs.get(args[2]);
-                Blobs file = Utils.readObject(
-                        new File(".gitlet/blobs/" + id + ".txt"), Blobs.class);
-                Utils.writeContents(
-                        new File(CWD + "/" + args[2]), file.getContent());
+            String name = repoPath(args[2]);
+            String id = name == null ? null : head.blobOf(name);
+            if (id != null) {
+                Blobs.writeTo(id, new File(CWD + "/" + name));
             } else {
                 System.out.println("File does not exist in that commit.");
                 return;
             }
         } else if (args.length == 4 && args[2].equals("--")) {
-            if (readUID(args[1]) != null) {
-                Commits commit = readUID(args[1]);
-                HashMap<String, String> blobs = commit.getBlob();
-                if (blobs.containsKey(args[3])) {
-                    String id = blobs.get(args[3]);
-                    Blobs file = Utils.readObject(
-                            new File(".gitlet/blobs/" + id + ".txt"),
-                            Blobs.class);
-                    Utils.writeContents(
-                            new File(CWD + "/" + args[3]), file.getContent());
+            Commits commit = readUID(args[1]);
+            if (commit != null) {
+                String name = repoPath(args[3]);
+                String id = name == null ? null : commit.blobOf(name);
+                if (id != null) {
+                    Blobs.writeTo(id, new File(CWD + "/" + name));
                 } else {
                     System.out.println("File does not exist in that commit.");
                     return;
@@ -257,25 +376,20 @@ public class Main {
                 return;
             }
         } else if (args.length == 2) {
-            if (!new File(".gitlet/tree/" + args[1]).exists()) {
+            Tree branch = Tree.branch(args[1]);
+            if (branch == null) {
                 System.out.println("No such branch exists.");
                 return;
             } else if (treeNode.getBranchName().equals(args[1])) {
                 System.out.println("No need to checkout the current branch.");
                 return;
-            } else if (untrackedFiles(treeNode, Utils.readObject(new
-                    File(".gitlet/tree/" + args[1]), Tree.class)).size() != 0) {
+            } else if (untrackedFiles(treeNode, branch).size() != 0) {
                 System.out.println("There is an untracked file "
                         + "in the way; delete it, or add and commit it first.");
             } else {
-                Tree branch = Utils.readObject(new File(".gitlet/tree/"
-                        + args[1]), Tree.class);
                 Commits commit = treeNode.getCommit();
-                File[] currentDirectory = CWD.listFiles(Utils.PLAIN_FILES);
-                HashMap<String, String> blobs = new HashMap<>();
-                blobs.putAll(branch.getCommit().getBlob());
-                checkoutFiles(currentDirectory, blobs, commit);
-                new Tree(args[1], branch.getParent(), branch.getCommitId());
+                checkoutFiles(branch.getCommit().getBlob(), commit);
+                branch.makeHead();
                 clearStagingArea();
             }
         } else {
@@ -292,52 +406,54 @@ public class Main {
      */
     public static void log() {
         validateDirectory();
-        Tree treeNode = Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
-        while (treeNode != null) {
-            Commits head = treeNode.getCommit();
+        String id = getTreeNode().getCommitId();
+        while (id != null) {
+            Commits head = Commits.read(id);
             System.out.println("===");
             System.out.println("commit " + head.getCommitID());
             System.out.println("Date: " + head.getTimeStamp());
             System.out.println(head.getMessage() + "\n");
-            treeNode = treeNode.getParent();
+            id = head.getParentID();
         }
     }
 
     /**Similar function to log, but displays all
      * commits every made. The order does not matter.
+     * Only the commit headers are read, and the output
+     * is buffered.
      */
     public static void globalLog() {
         validateDirectory();
-        File[] allCommits = new File(".gitlet/commits").listFiles();
-        for (int i = 0; i < allCommits.length; i++) {
-            Commits commit = Utils.readObject(allCommits[i], Commits.class);
-            System.out.println("===");
-            System.out.println("commit " + commit.getCommitID());
-            System.out.println("Date: " + commit.getTimeStamp());
-            System.out.println(commit.getMessage() + "\n");
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out,
+                StandardCharsets.UTF_8), 1 << 16);
+        try {
+            CommitHeaders.print(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
     /**Finds all the commits with the given message.
      * If there are more than 1, print on a different line.
+     * With --grep, finds the commits whose message contains
+     * all the given words instead. Both look the commits up
+     * in the message index rather than reading them.
      * @param args The input commit message
      */
     public static void find(String[] args) {
-        if (args.length != 2) {
+        List<String> found;
+        if (args.length == 3 && args[1].equals("--grep")) {
+            found = MessageIndex.grep(args[2]);
+        } else if (args.length == 2) {
+            found = MessageIndex.find(args[1]);
+        } else {
             System.out.println("Incorrect operands.");
             return;
         }
-        File[] allCommits = new File(".gitlet/commits").listFiles();
-        int count = 0;
-        for (int i = 0; i < allCommits.length; i++) {
-            Commits commit = Utils.readObject(allCommits[i], Commits.class);
-            if (commit.getMessage().equals(args[1])) {
-                System.out.println(commit.getCommitID());
-                count++;
-            }
+        for (String id : found) {
+            System.out.println(id);
         }
-        if (count == 0) {
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
     }
@@ -346,41 +462,91 @@ public class Main {
      * Display the staged Files and the removed
      * files. Modifications not staged for commit is
      * for files who are in the working directory that
-     * is also in the commit, but the content is different.
+     * is also in the commit, but the content is different,
+     * or whose staged version differs from the working one,
+     * or that were deleted without being staged for removal.
      * The untracked files is the ones that is in the
-     * working directory but not staged for add.
+     * working directory but not staged for add, leaving
+     * out those .gitletignore ignores.
+     * The working files are hashed in parallel.
      */
     public static void status() {
         System.out.println("=== Branches ===");
         Tree treeNode = getTreeNode();
-        for (String name : Utils.plainFilenamesIn(
-                new File(".gitlet/tree"))) {
+        for (String name : Tree.branchNames()) {
             if (name.equals(treeNode.getBranchName())) {
                 System.out.println("*" + name);
-            } else if (name.equals("treeNode")) {
-                continue;
             } else {
                 System.out.println(name);
             }
         }
         System.out.println("\n=== Staged Files ===");
-        List<String> fileContained =
-                Utils.plainFilenamesIn(new File(".gitlet/staging/add"));
+        Staging staging = Staging.load();
+        List<String> fileContained = staging.added();
         for (String name: fileContained) {
             System.out.println(name);
         }
         System.out.println("\n=== Removed Files ===");
-        List<String> stagedRemoval =
-                Utils.plainFilenamesIn(new File(".gitlet/staging/rm"));
-        for (String removal: stagedRemoval) {
+        for (String removal: staging.removed()) {
             System.out.println(removal);
         }
         System.out.println("\n=== Modifications Not Staged For Commit ===");
-        Commits currentCommit = treeNode.getCommit();
+        Manifest tracked = treeNode.getCommit().getBlob();
+        TreeSet<String> names = new TreeSet<>(fileContained);
+        for (int i = 0; i < tracked.size(); i++) {
+            names.add(tracked.path(i));
+        }
+        Map<String, String> working = workingIds(names);
+        for (String name: names) {
+            String now = working.get(name);
+            if (staging.isAdded(name)) {
+                if (now == null) {
+                    System.out.println(name + " (deleted)");
+                } else if (!now.equals(staging.get(name))) {
+                    System.out.println(name + " (modified)");
+                }
+            } else if (!staging.isRemoved(name)) {
+                if (now == null) {
+                    System.out.println(name + " (deleted)");
+                } else if (!now.equals(tracked.get(name))) {
+                    System.out.println(name + " (modified)");
+                }
+            }
+        }
         System.out.println("\n=== Untracked Files ===");
+        for (String name: Ignore.load().files("")) {
+            if (staging.isRemoved(name) || (!tracked.containsKey(name)
+                    && !staging.isAdded(name))) {
+                System.out.println(name);
+            }
+        }
         System.out.println();
     }
 
+    /**Hash the working files with the given names in
+     * parallel on the fork-join pool, asking the index
+     * first so unchanged files are not read.
+     * @param names the names of the files.
+     * @return the blob IDs of the files that exist.
+     */
+    public static Map<String, String> workingIds(Collection<String> names) {
+        Trace.Phase phase = Trace.phase("workingIds");
+        try {
+            Index index = Index.get();
+            Map<String, String> ids = new ConcurrentHashMap<>();
+            names.parallelStream().forEach(name -> {
+                String id = index.idOf(name, new File(CWD, name));
+                if (id != null) {
+                    ids.put(name, id);
+                }
+            });
+            index.save();
+            return ids;
+        } finally {
+            phase.end();
+        }
+    }
+
     /**Creates a new branch with the name given,
      * points to the current head commit. When creating
      * a new branch, the head branch does not immediately
@@ -391,8 +557,7 @@ public class Main {
         if (args.length != 2) {
             System.out.println("Incorrect operands.");
             return;
-        } else if (Utils.plainFilenamesIn(
-                new File(".gitlet/tree")).contains(args[1])) {
+        } else if (Tree.branch(args[1]) != null) {
             System.out.println("A branch with that name already exists.");
             return;
         }
@@ -412,13 +577,12 @@ public class Main {
             return;
         }
         Tree treeNode = getTreeNode();
-        if (!new File(".gitlet/tree/" + args[1]).exists()) {
+        if (Tree.branch(args[1]) == null) {
             System.out.println("A branch with that name does not exist.");
         } else if (treeNode.getBranchName().equals(args[1])) {
             System.out.println("Cannot remove the current branch.");
         } else {
-            treeNode.getBranches().remove(args[1]);
-            new File(".gitlet/tree/" + args[1]).delete();
+            Tree.deleteBranch(args[1]);
         }
     }
 
@@ -444,25 +608,8 @@ public class Main {
                     + "in the way; delete it, or add and commit it first.");
             return;
         }
-        HashMap<String, String> blobs = new HashMap<>();
-        File[] currentDirectory = CWD.listFiles(Utils.PLAIN_FILES);
-        blobs.putAll(commit.getBlob());
-        checkoutFiles(currentDirectory, blobs, treeNode.getCommit());
-        File reset = new File(".gitlet/tree/reset/" + treeNode.getCommitId());
-        Utils.writeObject(reset, treeNode);
-        outerloop:
-        if (new File(".gitlet/tree/reset/" + commit.getCommitID()).exists()) {
-            treeNode = Utils.readObject(new File(".gitlet/tree/reset/"
-                            + commit.getCommitID()), Tree.class);
-        } else {
-            while (treeNode != null) {
-                if (treeNode.getCommitId().equals(commit.getCommitID())) {
-                    break outerloop;
-                }
-                treeNode = treeNode.getParent();
-            }
-        }
-        new Tree(treeNode.getBranchName(), treeNode.getParent(), args[1]);
+        checkoutFiles(commit.getBlob(), treeNode.getCommit());
+        treeNode.setCommitId(commit.getCommitID());
         clearStagingArea();
     }
 
@@ -476,25 +623,22 @@ public class Main {
             return;
         }
         Tree treeNode = getTreeNode();
-        if (new File(".gitlet/staging/add/").list().length != 0
-                || new File(".gitlet/staging/rm").list().length != 0) {
+        Tree given = Tree.branch(args[1]);
+        if (!stagingEmpty()) {
             System.out.println("You have uncommitted changes.");
             return;
-        } else if (!new File(".gitlet/tree/" + args[1]).exists()) {
+        } else if (given == null) {
             System.out.println("A branch with that name does not exist.");
             return;
         } else if (args[1].equals(treeNode.getBranchName())) {
             System.out.println("Cannot merge a branch with itself.");
             return;
-        } else if (untrackedFiles(treeNode, Utils.readObject(new File(
-                ".gitlet/tree/" + args[1]), Tree.class)).size() != 0) {
+        } else if (untrackedFiles(treeNode, given).size() != 0) {
             System.out.println("There is an untracked file "
                     + "in the way; delete it, or add and commit it first.");
             return;
         }
         Commits treeNodeCommit = treeNode.getCommit();
-        Tree given = Utils.readObject(new File(".gitlet/tree/" + args[1]),
-                Tree.class);
         Commits givenCommit = given.getCommit();
         String splitPoint = findSplitPoint(treeNode, given);
         if (splitPoint.equals(given.getCommitId())) {
@@ -506,14 +650,28 @@ public class Main {
             System.out.println("Current branch fast-forwarded.");
             return;
         }
-        Commits splitCommit = Utils.readObject(
-                new File(".gitlet/commits/"
-                        + splitPoint + ".txt"), Commits.class);
-        boolean conflict =
-                conflictMerge(splitCommit, givenCommit, treeNodeCommit);
-        boolean sconflict = twoMerge(givenCommit, treeNodeCommit, splitCommit);
-        mergeCommit(args[1], treeNode.getBranchName());
-        if (conflict || sconflict) {
+        Commits splitCommit = Commits.read(splitPoint);
+        boolean conflict;
+        Trace.Phase phase = Trace.phase("conflictMerge");
+        try {
+            conflict = conflictMerge(splitCommit, givenCommit,
+                    treeNodeCommit);
+        } finally {
+            phase.end();
+        }
+        phase = Trace.phase("twoMerge");
+        try {
+            conflict |= twoMerge(givenCommit, treeNodeCommit, splitCommit);
+        } finally {
+            phase.end();
+        }
+        phase = Trace.phase("mergeCommit");
+        try {
+            mergeCommit(args[1], treeNode.getBranchName());
+        } finally {
+            phase.end();
+        }
+        if (conflict) {
             System.out.println("Encountered a merge conflict.");
         }
     }
@@ -527,112 +685,50 @@ public class Main {
      */
     public static boolean twoMerge(Commits given,
                                    Commits treeNode, Commits split) {
-        HashMap<String, String> splitBlob = split.getBlob();
-        HashMap<String, String> givenBlob = given.getBlob();
-        HashMap<String, String> treeNodeBlob = treeNode.getBlob();
-        boolean isConflict = false;
-        for (String name: givenBlob.keySet()) {
-            if (!splitBlob.containsKey(name)
-                    && !treeNodeBlob.containsKey(name)) {
-                String id = givenBlob.get(name);
-                Blobs file = Utils.readObject(
-                        new File(".gitlet/blobs/" + id + ".txt"), Blobs.class);
-                Utils.writeContents(
-                        new File(CWD + "/" + name), file.getContent());
-                Utils.writeContents(new File(".gitlet/staging/add/" + name),
-                        file.getContent());
-            } else if (!splitBlob.containsKey(name)
-                    && treeNodeBlob.containsKey(name)) {
-                if (!givenBlob.get(name).equals(treeNodeBlob.get(name))) {
-                    isConflict = true;
-                    Blobs givenFile = Utils.readObject(new File(".gitlet/blobs/"
-                            + givenBlob.get(name) + ".txt"), Blobs.class);
-                    Blobs treeFile = Utils.readObject(new File(".gitlet/blobs/"
-                            + treeNodeBlob.get(name) + ".txt"), Blobs.class);
-                    Utils.writeContents(new File(CWD + "/" + name),
-                            "<<<<<<< HEAD\n"
-                            + treeFile.getContent() + "=======\n"
-                                    + givenFile.getContent() + ">>>>>>>\n");
-                    Utils.writeContents(new File(".gitlet/staging/add/" + name),
-                            Utils.readContentsAsString(
-                                    new File(CWD + "/" + name)));
-                }
-            }
-
-        }
-        return isConflict;
-    }
-
-    /** Add all nodes to the map.
-     * @param map The map to be added.
-     * @param node The head node
-     * @param steps the step to the head node
-     */
-    public static void addToMap(HashMap<String, Integer> map,
-                                Tree node, int steps) {
-        if (node == null) {
-            return;
-        }
-        String id = node.getCommitId();
-        if (map.containsKey(id)) {
-            if (steps < map.get(id)) {
-                map.put(id, steps);
+        boolean[] isConflict = {false};
+        Staging staging = Staging.load();
+        Manifest.join((name, ids) -> {
+            String givenId = ids[0];
+            String headId = ids[1];
+            if (givenId == null || ids[2] != null) {
+                return;
+            } else if (headId == null) {
+                Blobs.writeTo(givenId, new File(CWD + "/" + name));
+                staging.add(name, givenId);
+            } else if (!givenId.equals(headId)) {
+                isConflict[0] = true;
+                writeConflict(staging, name, headId, givenId);
             }
-        } else {
-            map.put(id, steps);
-        }
-        if (node.getMergeParent() != null) {
-            addToMap(map, node.getMergeParent(), steps + 1);
-            addToMap(map, node.getParent(), steps + 1);
-        } else {
-            addToMap(map, node.getParent(), steps + 1);
-        }
-    }
-
-    /** Add all nodes to arraylist.
-     * @param list The list to be added.
-     * @param node The tree node
-     */
-    public static void addToList(List<String> list, Tree node) {
-        if (node == null) {
-            return;
-        }
-        String id = node.getCommitId();
-        list.add(id);
-        if (node.getMergeParent() != null) {
-            addToList(list, node.getMergeParent());
-            addToList(list, node.getParent());
-        } else {
-            addToList(list, node.getParent());
-        }
+        }, given.getBlob(), treeNode.getBlob(), split.getBlob());
+        staging.save();
+        return isConflict[0];
     }
 
-    /**Find the split node in the branches.
+    /**Find the split node in the branches, the latest
+     * common ancestor of the two heads, using the commit
+     * graph. Commits the graph did not know yet are saved
+     * into it for the next merge.
      * @param treeNode the current treeNode.
      * @param given the given Branch.
      * @return the split node.
      */
     public static String findSplitPoint(Tree treeNode, Tree given) {
-        HashMap<String, Integer> headtree = new HashMap<>();
-        ArrayList<String> givenCommitId = new ArrayList<>();
-        addToMap(headtree, treeNode, 0);
-        addToList(givenCommitId, given);
-        int min = 5;
-        String id = "";
-        for (String givenId: givenCommitId) {
-            if (headtree.containsKey(givenId)) {
-                if (min > headtree.get(givenId)) {
-                    min = headtree.get(givenId);
-                    id = givenId;
-                }
-            }
+        Trace.Phase phase = Trace.phase("findSplitPoint");
+        try {
+            CommitGraph graph = CommitGraph.load();
+            String id = graph.mergeBase(treeNode.getCommitId(),
+                    given.getCommitId());
+            graph.save();
+            return id == null ? "" : id;
+        } finally {
+            phase.end();
         }
-        return id;
     }
 
     /**The helper function for merge. Go through
      * each circumstances given using the three
-     * commits.
+     * commits, whose files are walked together in
+     * path order.
      * @param split The commits of the split Node.
      * @param given The given commits.
      * @param treeNode The current head treeNode.
@@ -640,63 +736,61 @@ public class Main {
      */
     public static boolean conflictMerge(Commits split,
                                         Commits given, Commits treeNode) {
-        boolean conflict = false;
-        HashMap<String, String> splitBlob = split.getBlob();
-        HashMap<String, String> givenBlob = given.getBlob();
-        HashMap<String, String> treeNodeBlob = treeNode.getBlob();
-        for (String name: splitBlob.keySet()) {
-            if (givenBlob.containsKey(name) && treeNodeBlob.containsKey(name)) {
-                Blobs givenFile = Utils.readObject(new File(".gitlet/blobs/"
-                        + givenBlob.get(name) + ".txt"), Blobs.class);
-                Blobs treeFile = Utils.readObject(new File(".gitlet/blobs/"
-                        + treeNodeBlob.get(name) + ".txt"), Blobs.class);
-                if (splitBlob.get(name).equals(treeNodeBlob.get(name))
-                        && !splitBlob.get(name).equals(givenBlob.get(name))) {
-                    Utils.writeContents(new File(CWD + "/" + name),
-                            givenFile.getContent());
-                    Utils.writeContents(new File(".gitlet/staging/add/" + name),
-                            givenFile.getContent());
-                } else if (!splitBlob.get(name).equals(treeNodeBlob.get(name))
-                        && !splitBlob.get(name).equals(givenBlob.get(name))
-                        && !givenBlob.get(name).equals(
-                                treeNodeBlob.get(name))) {
-                    conflict = true;
-                    Utils.writeContents(new File(CWD + "/" + name),
-                            "<<<<<<< HEAD\n" + treeFile.getContent() + "======="
-                                     + "\n" + givenFile.getContent()
-                                    + ">>>>>>>\n");
-                    Utils.writeContents(new File(".gitlet/staging/add/" + name),
-                            Utils.readContentsAsString(new File(CWD + "/"
-                                    + name)));
+        boolean[] conflict = {false};
+        Staging staging = Staging.load();
+        Manifest.join((name, ids) -> {
+            String splitId = ids[0];
+            String givenId = ids[1];
+            String headId = ids[2];
+            if (splitId == null) {
+                return;
+            } else if (givenId != null && headId != null) {
+                if (splitId.equals(headId) && !splitId.equals(givenId)) {
+                    Blobs.writeTo(givenId, new File(CWD + "/" + name));
+                    staging.add(name, givenId);
+                } else if (!splitId.equals(headId)
+                        && !splitId.equals(givenId)
+                        && !givenId.equals(headId)) {
+                    conflict[0] = true;
+                    writeConflict(staging, name, headId, givenId);
                 }
-            } else if (givenBlob.containsKey(name)) {
-                if (!splitBlob.get(name).equals(givenBlob.get(name))) {
-                    conflict = true;
-                    Blobs givenFile = Utils.readObject(new File(".gitlet/blobs/"
-                            + givenBlob.get(name) + ".txt"), Blobs.class);
-                    Utils.writeContents(new File(CWD + "/" + name),
-                            "<<<<<<< HEAD\n=======\n"
-                                    + givenFile.getContent() + ">>>>>>>\n");
-                    Utils.writeContents(new File(".gitlet/staging/add/" + name),
-                            Utils.readContentsAsString(new File(CWD + "/"
-                                    + name)));
+            } else if (givenId != null) {
+                if (!splitId.equals(givenId)) {
+                    conflict[0] = true;
+                    writeConflict(staging, name, null, givenId);
                 }
-            } else if (treeNodeBlob.containsKey(name)) {
-                if (splitBlob.get(name).equals(treeNodeBlob.get(name))) {
-                    new File(CWD + "/" + name).delete();
+            } else if (headId != null) {
+                if (splitId.equals(headId)) {
+                    deletePath(CWD, name);
                 } else {
-                    conflict = true;
-                    Blobs treeFile = Utils.readObject(new File(".gitlet/blobs/"
-                            + treeNodeBlob.get(name) + ".txt"), Blobs.class);
-                    Utils.writeContents(new File(CWD + "/" + name),
-                            "<<<<<<< HEAD\n"
-                            + treeFile.getContent() + "=======\n>>>>>>>\n");
-                    write(new File(".gitlet/staging/add/" + name), Utils.
-                            readContentsAsString(new File(CWD + "/" + name)));
+                    conflict[0] = true;
+                    writeConflict(staging, name, headId, null);
                 }
             }
-        }
-        return conflict;
+        }, split.getBlob(), given.getBlob(), treeNode.getBlob());
+        staging.save();
+        return conflict[0];
+    }
+
+    /**Write the versions HEADID and GIVENID of the file NAME
+     * between conflict markers to the working file, and stage
+     * the result in STAGING. A missing version is left empty.
+     * @param staging the staging area.
+     * @param name the path of the file.
+     * @param headId the blob ID in the current branch, or null.
+     * @param givenId the blob ID in the given branch, or null.
+     */
+    private static void writeConflict(Staging staging, String name,
+                                      String headId, String givenId) {
+        byte[] none = new byte[0];
+        Object[] contents = {"<<<<<<< HEAD\n",
+            headId == null ? none : Blobs.readContents(headId), "=======\n",
+            givenId == null ? none : Blobs.readContents(givenId),
+            ">>>>>>>\n"};
+        File working = new File(CWD + "/" + name);
+        working.getParentFile().mkdirs();
+        Utils.writeContents(working, contents);
+        staging.add(name, Blobs.store(working));
     }
 
     /**
@@ -713,86 +807,104 @@ public class Main {
      * @param current current branch name.
      */
     public static void mergeCommit(String given, String current) {
-        String[] fileContained = new File(".gitlet/staging/add").list();
-        String[] stagedRemoval = new File(".gitlet/staging/rm").list();
-        Blobs[] blobs = new Blobs[fileContained.length];
-        for (int i = 0; i < fileContained.length; i++) {
-            File file = new File(".gitlet/staging/add/" + fileContained[i]);
-            blobs[i] = new Blobs(fileContained[i], file);
-            file.delete();
-        }
-        Tree treeNode = Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
-        HashMap<String, String> parentAfterRM =
-                new HashMap<String, String>();
-        parentAfterRM.putAll(treeNode.getCommit().getBlob());
-        for (int i = 0; i < stagedRemoval.length; i++) {
-            parentAfterRM.remove(stagedRemoval[i]);
-            File rm = new File(".gitlet/staging/rm/" + stagedRemoval[i]);
-            rm.delete();
-        }
-        Commits head = new Commits("Merged "
-                + given + " into " + current + ".", parentAfterRM, blobs);
-        new Tree(getTreeNode(),
-                Utils.readObject(new File(".gitlet/tree/" + given),
-                Tree.class), head.getCommitID());
+        Tree treeNode = getTreeNode();
+        Commits head = new Commits("Merged " + given + " into " + current
+                + ".", treeNode.getCommitId(),
+                Tree.branch(given).getCommitId(), stagedChanges());
+        treeNode.setCommitId(head.getCommitID());
+    }
+
+    /**Move all loose commits and blobs into packs, so
+     * that later commands read them from a few mapped
+     * files instead of one file per object, and bring
+     * the commit graph up to date.
+     * @param args the command, with no operands.
+     */
+    public static void repack(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        ObjectStore.repack();
+        CommitIndex.compact();
+        CommitGraph graph = CommitGraph.load();
+        for (String id : ObjectStore.ids(ObjectStore.COMMITS)) {
+            graph.position(id);
+        }
+        graph.save();
+    }
+
+    /**Delete the commits and blobs that no branch reaches and
+     * repack the rest. Unreachable objects younger than the grace
+     * period, two weeks unless --grace gives it in seconds, are
+     * kept, so that work in progress is not lost.
+     * @param args the command, optionally with --grace SECONDS.
+     */
+    public static void gc(String[] args) {
+        long grace = GarbageCollector.GRACE;
+        if (args.length == 3 && args[1].equals("--grace")
+                && args[2].matches("[0-9]+")) {
+            grace = Long.parseLong(args[2]) * 1000;
+        } else if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        GarbageCollector.collect(grace);
     }
 
     /**Validate if the current directory contains
-     * a .gitlet folder. If not, print the error
-     * message.
+     * a .gitlet folder. If not, throw an error
+     * with the message. Repositories still keeping their history
+     * in .gitlet/tree are upgraded first.
      */
     public static void validateDirectory() {
         if (!new File(".gitlet").exists()) {
-            System.out.println("Not in an initialized Gitlet directory.");
-            System.exit(0);
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        if (LegacyTree.needsMigration()) {
+            LegacyTree.migrate();
         }
     }
 
     /**Give the treeNode where the head points to.
      * @return the treeNode.*/
     public static Tree getTreeNode() {
-        return Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
+        return Tree.head();
     }
 
     /**Helper method used to track the untracked
-     * files in the checkout branch.
+     * files in the checkout branch. Ignored files are
+     * not counted, so they may be overwritten.
      * @param treeNode the current branch.
      * @param checkout the checkout branch.
      * @return the list of untracked files.
      */
     public static List<String> untrackedFiles(Tree treeNode, Tree checkout) {
-        List<String> untracked = Utils.plainFilenamesIn(CWD);
+        Manifest current = treeNode.getCommit().getBlob();
+        Manifest other = checkout.getCommit().getBlob();
+        Staging staging = Staging.load();
         List<String> copy = new ArrayList<>();
-        copy.addAll(untracked);
-        for (String name: untracked) {
-            if (treeNode.getCommit().getBlob().containsKey(name)) {
-                copy.remove(name);
-            } else if (Utils.plainFilenamesIn(
-                    new File(".gitlet/staging/add")).contains(name)) {
-                copy.remove(name);
-            } else if (Utils.plainFilenamesIn(
-                    new File(".gitlet/staging/rm")).contains(name)) {
-                copy.remove(name);
-            } else if (!checkout.getCommit().getBlob().containsKey(name)) {
-                copy.remove(name);
+        for (String name: Ignore.load().files("")) {
+            if (!current.containsKey(name) && !staging.isAdded(name)
+                    && !staging.isRemoved(name) && other.containsKey(name)) {
+                copy.add(name);
             }
         }
         return copy;
     }
 
     /**Helper method used to track the untracked
-     * files in the checkout branch.
+     * files in the checkout branch. Ignored files are
+     * not counted, so they may be overwritten.
      * @param treeNode the current branch.
      * @param checkout the checkout commit.
      * @return the list of untracked files.
      */
     public static boolean untrackedFiles(Tree treeNode, Commits checkout) {
-        List<String> untracked = Utils.plainFilenamesIn(CWD);
-        for (String name: untracked) {
-            if (!treeNode.getCommit().getBlob().containsKey(name)
-                && checkout.getBlob().containsKey(name)) {
+        Manifest current = treeNode.getCommit().getBlob();
+        Manifest other = checkout.getBlob();
+        for (String name: Ignore.load().files("")) {
+            if (!current.containsKey(name) && other.containsKey(name)) {
                 return true;
             }
         }
@@ -803,74 +915,155 @@ public class Main {
      * @param treeNode The treenode given to find tracked Files.
      * @return  the list of tracked Files.*/
     public static List<String> trackedFiles(Tree treeNode) {
-        List<String> tracked = Utils.plainFilenamesIn(CWD);
-        for (String name: tracked) {
-            if (!treeNode.getCommit().getBlob().containsKey(name)
-                    && !Utils.plainFilenamesIn(
-                            new File(".gitlet/staging/add")).contains(name)
-                    && !Utils.plainFilenamesIn(
-                        new File(".gitlet/staging/rm")).contains(name)) {
-                tracked.remove(name);
-            }
-        }
+        Manifest current = treeNode.getCommit().getBlob();
+        Staging staging = Staging.load();
+        List<String> tracked = Utils.plainFilenamesBelow(CWD);
+        tracked.removeIf(name -> !current.containsKey(name)
+                && !staging.isAdded(name) && !staging.isRemoved(name));
         return tracked;
     }
 
     /**Clear the staging area.*/
     public static void clearStagingArea() {
-        String[] fileContained = new File(".gitlet/staging/add/").list();
-        String[] stagedRemoval = new File(".gitlet/staging/rm").list();
-        for (int i = 0; i < fileContained.length; i++) {
-            new File(".gitlet/staging/add/" + fileContained[i]).delete();
+        Staging staging = Staging.load();
+        staging.clear();
+        staging.save();
+    }
+
+    /**Delete the file at PATH below ROOT, and then each
+     * directory above it, up to ROOT, that is left empty.
+     * @param root the directory PATH is relative to.
+     * @param path the path of the file, with / between directories.
+     */
+    public static void deletePath(File root, String path) {
+        File file = new File(root, path);
+        file.delete();
+        File dir = file.getParentFile();
+        while (!dir.equals(root) && dir.delete()) {
+            dir = dir.getParentFile();
         }
-        for (int i = 0; i < stagedRemoval.length; i++) {
-            new File(".gitlet/staging/rm/" + stagedRemoval[i]).delete();
+    }
+
+    /**Return ARG as a path relative to the working directory,
+     * normalized and with / between directories, or null if
+     * it is outside the working directory or inside .gitlet.
+     * The working directory itself is the empty path.
+     * @param arg a path given by the user.
+     * @return the path of the file in the repository.
+     */
+    public static String repoPath(String arg) {
+        Path path = Paths.get(arg);
+        if (path.isAbsolute()) {
+            path = CWD.toPath().toAbsolutePath().normalize().relativize(path);
         }
+        path = path.normalize();
+        String first = path.getName(0).toString();
+        if (path.toString().isEmpty()) {
+            return "";
+        } else if (first.equals("..") || first.equals(".gitlet")) {
+            return null;
+        }
+        return path.toString().replace(File.separatorChar, '/');
     }
 
     /**Helper function for checkout all files in the
-     * given commit.
-     * @param blobs The hashmap of blobs.
+     * given commit. The files of the current commit and
+     * of the given one are walked together. A file only
+     * the current commit has is deleted, and a file whose
+     * blob differs between them is written. A file with
+     * the same blob in both is only written again if its
+     * working copy no longer matches, which the index
+     * answers from the stat data. All deletions finish
+     * before any write starts, so a file replaced by a
+     * directory of the same name, or the other way round,
+     * is gone first. Both steps run on a bounded pool.
+     * @param blobs The files to check out.
      * @param commit the current commit.
-     * @param currentDirectory The file directory with files array.
-     */
-    public static void checkoutFiles(File[] currentDirectory,
-                                     HashMap<String, String> blobs,
-                                     Commits commit) {
-        for (File change: currentDirectory) {
-            if (blobs.containsKey(change.getName())) {
-                String id = blobs.get(change.getName());
-                Blobs file = Utils.readObject(
-                        new File(".gitlet/blobs/" + id + ".txt"), Blobs.class);
-                Utils.writeContents(change, file.getContent());
-                blobs.remove(change.getName());
-            } else if (commit.getBlob().containsKey(change.getName())) {
-                change.delete();
-            }
+     */
+    public static void checkoutFiles(Manifest blobs, Commits commit) {
+        Trace.Phase phase = Trace.phase("checkoutFiles");
+        try {
+            Index index = Index.get();
+            List<Runnable> deletes = new ArrayList<>();
+            List<Runnable> writes = new ArrayList<>();
+            Manifest.join((name, ids) -> {
+                String old = ids[0];
+                String id = ids[1];
+                File file = new File(CWD + "/" + name);
+                if (id == null) {
+                    deletes.add(() -> {
+                        deletePath(CWD, name);
+                        index.forget(name);
+                    });
+                } else if (!id.equals(old)) {
+                    writes.add(() -> {
+                        Blobs.writeTo(id, file);
+                        index.record(name, file, id);
+                    });
+                } else {
+                    writes.add(() -> {
+                        if (!id.equals(index.idOf(name, file))) {
+                            Blobs.writeTo(id, file);
+                            index.record(name, file, id);
+                        }
+                    });
+                }
+            }, commit.getBlob(), blobs);
+            runAll(deletes);
+            runAll(writes);
+            index.save();
+        } finally {
+            phase.end();
+        }
+    }
+
+    /**Run TASKS on at most CHECKOUT_THREADS threads and
+     * wait for all of them. The first task to fail has its
+     * exception thrown again here.
+     * @param tasks the tasks, in no particular order.
+     */
+    private static void runAll(List<Runnable> tasks) {
+        if (tasks.size() < 2) {
+            tasks.forEach(Runnable::run);
+            return;
         }
-        for (String blob: blobs.keySet()) {
-            String id = blobs.get(blob);
-            Blobs file = Utils.readObject(
-                    new File(".gitlet/blobs/" + id + ".txt"), Blobs.class);
-            Utils.writeContents(new File(CWD + "/" + blob),
-                    file.getContent());
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(CHECKOUT_THREADS, tasks.size()));
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (Runnable task : tasks) {
+                running.add(pool.submit(task));
+            }
+            for (Future<?> task : running) {
+                task.get();
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(excp);
+        } finally {
+            pool.shutdownNow();
         }
     }
 
     /**
-     * Find the commits using a shorter ID.
+     * Find the commits using a shorter ID of at least four
+     * characters, looked up in the commit index. Throws a
+     * GitletException if more than one commit matches.
      * @param arg the substring of commit ID.
-     * @return the commits found
+     * @return the commits found, or null if there is none.
      */
     public static Commits readUID(String arg) {
-        List<String> commits = Utils.plainFilenamesIn(
-                new File(".gitlet/commits"));
-        for (String id: commits) {
-            if (arg.substring(0, 6).equals(id.substring(0, 6))) {
-                return Utils.readObject(
-                        new File(".gitlet/commits/" + id), Commits.class);
-            }
+        List<String> matches = CommitIndex.find(arg, 2);
+        if (matches.size() > 1) {
+            throw Utils.error("Commit id %s is ambiguous.", arg);
+        } else if (matches.isEmpty()) {
+            return null;
         }
-        return null;
+        return Commits.read(matches.get(0));
     }
 }
@@ -0,0 +1,311 @@
+package gitlet;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+* The files of a commit: an immutable list of paths and their blob
+* IDs, sorted by path. The paths are kept as UTF-8 one after another
+* in a single byte array, with the offset where each starts, and the
+* IDs as 20 raw bytes each in another array, so a manifest costs some
+* 25 bytes per file on top of its paths instead of the two strings and
+* the map node of a HashMap entry. Paths are compared as unsigned
+* bytes, which orders them by code point. A lookup is a binary search,
+* and join walks several manifests together in one linear pass.
+* Manifests with the same paths, as most commits next to each other
+* are, share one copy of the paths.
+* @author Yuhan Dong
+ */
+final class Manifest {
+
+    /** Bytes added to the size of the arrays for the objects holding
+     * them.
+     */
+    private static final long OBJECT_OVERHEAD = 96;
+
+    /** Formats the blob IDs in lower-case hex.*/
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** The paths of a manifest.*/
+    private static final class Paths {
+
+        /** The UTF-8 bytes of the paths, one after another.*/
+        private final byte[] bytes;
+
+        /** Where each path starts in BYTES, then the length of BYTES.*/
+        private final int[] offsets;
+
+        /** The hash code of the contents.*/
+        private final int hash;
+
+        /** The paths in BYTES starting at OFFSETS.
+         * @param bytes the paths.
+         * @param offsets the start of each path and the end of the last.
+         */
+        Paths(byte[] bytes, int[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            hash = 31 * Arrays.hashCode(bytes) + Arrays.hashCode(offsets);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Paths && hash == ((Paths) other).hash
+                    && Arrays.equals(bytes, ((Paths) other).bytes)
+                    && Arrays.equals(offsets, ((Paths) other).offsets);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** Something told about each path of a join.*/
+    interface Visitor {
+        /** Visit PATH, whose blob ID in the I-th manifest joined is
+         * IDS[I], or null if it has no such file. IDS is reused for
+         * the next path.
+         * @param path the path.
+         * @param ids the blob IDs.
+         */
+        void visit(String path, String[] ids);
+    }
+
+    /** Collects the files of a manifest in any order.*/
+    static final class Builder {
+
+        /** The UTF-8 bytes of the paths added.*/
+        private final List<byte[]> paths = new ArrayList<>();
+
+        /** The raw blob IDs added.*/
+        private final List<byte[]> ids = new ArrayList<>();
+
+        /** Add the file PATH with the blob ID. A path added twice
+         * keeps the ID added last.
+         * @param path the path, with / between directories.
+         * @param id the blob ID in hex.
+         */
+        Builder add(String path, String id) {
+            paths.add(path.getBytes(StandardCharsets.UTF_8));
+            ids.add(PackFile.fromHex(id));
+            return this;
+        }
+
+        /** Return the manifest of the files added.*/
+        Manifest build() {
+            Integer[] order = new Integer[paths.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(
+                    paths.get(a), paths.get(b)));
+            int count = 0;
+            int length = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (i + 1 == order.length || !Arrays.equals(
+                        paths.get(order[i]), paths.get(order[i + 1]))) {
+                    order[count] = order[i];
+                    count += 1;
+                    length += paths.get(order[i]).length;
+                }
+            }
+            byte[] bytes = new byte[length];
+            int[] offsets = new int[count + 1];
+            byte[] raw = new byte[count * PackFile.ID_BYTES];
+            for (int i = 0; i < count; i++) {
+                byte[] path = paths.get(order[i]);
+                System.arraycopy(path, 0, bytes, offsets[i], path.length);
+                offsets[i + 1] = offsets[i] + path.length;
+                System.arraycopy(ids.get(order[i]), 0, raw,
+                        i * PackFile.ID_BYTES, PackFile.ID_BYTES);
+            }
+            return new Manifest(intern(new Paths(bytes, offsets)), raw);
+        }
+    }
+
+    /** The path tables of the manifests in use, for sharing. A table
+     * is dropped once no manifest holds it.
+     */
+    private static final Map<Paths, WeakReference<Paths>> TABLES =
+        new WeakHashMap<>();
+
+    /** The manifest with no files.*/
+    static final Manifest EMPTY = new Builder().build();
+
+    /** The paths.*/
+    private final Paths paths;
+
+    /** The raw blob IDs, 20 bytes each, in the order of the paths.*/
+    private final byte[] ids;
+
+    /** The manifest of PATHS with the raw IDS.
+     * @param paths the paths.
+     * @param ids the blob IDs.
+     */
+    private Manifest(Paths paths, byte[] ids) {
+        this.paths = paths;
+        this.ids = ids;
+    }
+
+    /** Return the manifest of FILES.
+     * @param files blob IDs by path.
+     */
+    static Manifest of(Map<String, String> files) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            builder.add(file.getKey(), file.getValue());
+        }
+        return builder.build();
+    }
+
+    /** Return the path table in use that is equal to TABLE, or TABLE
+     * if there is none.
+     * @param table the new path table.
+     */
+    private static Paths intern(Paths table) {
+        synchronized (TABLES) {
+            WeakReference<Paths> old = TABLES.get(table);
+            Paths result = old == null ? null : old.get();
+            if (result == null) {
+                TABLES.put(table, new WeakReference<>(table));
+                result = table;
+            }
+            return result;
+        }
+    }
+
+    /** Return the number of files.*/
+    int size() {
+        return paths.offsets.length - 1;
+    }
+
+    /** Return the I-th path.
+     * @param i the position, from 0.
+     */
+    String path(int i) {
+        int start = paths.offsets[i];
+        return new String(paths.bytes, start, paths.offsets[i + 1] - start,
+                StandardCharsets.UTF_8);
+    }
+
+    /** Return the blob ID of the I-th path.
+     * @param i the position, from 0.
+     */
+    String id(int i) {
+        return HEX.formatHex(ids, i * PackFile.ID_BYTES,
+                (i + 1) * PackFile.ID_BYTES);
+    }
+
+    /** Return the position of PATH, or -1 if there is no such file.
+     * @param path the path.
+     */
+    int indexOf(String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Arrays.compareUnsigned(paths.bytes,
+                    paths.offsets[mid], paths.offsets[mid + 1],
+                    key, 0, key.length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the blob ID of PATH, or null if there is no such file.
+     * @param path the path.
+     */
+    String get(String path) {
+        int i = indexOf(path);
+        return i < 0 ? null : id(i);
+    }
+
+    /** Return true if there is a file at PATH.
+     * @param path the path.
+     */
+    boolean containsKey(String path) {
+        return indexOf(path) >= 0;
+    }
+
+    /** Return the files as a map of blob IDs by path.*/
+    Map<String, String> toMap() {
+        Map<String, String> result = new HashMap<>(size() * 4 / 3 + 1);
+        for (int i = 0; i < size(); i++) {
+            result.put(path(i), id(i));
+        }
+        return result;
+    }
+
+    /** Return the approximate heap size of this manifest in bytes,
+     * counting the paths even when they are shared.
+     */
+    long weight() {
+        return OBJECT_OVERHEAD + paths.bytes.length
+                + 4L * paths.offsets.length + ids.length;
+    }
+
+    /** Call VISITOR once for each path in any of MANIFESTS, in order,
+     * with the blob ID of the path in each of them. This takes one
+     * pass over each manifest.
+     * @param visitor what is told about each path.
+     * @param manifests the manifests joined.
+     */
+    static void join(Visitor visitor, Manifest... manifests) {
+        int[] pos = new int[manifests.length];
+        String[] found = new String[manifests.length];
+        while (true) {
+            int least = -1;
+            for (int k = 0; k < manifests.length; k++) {
+                if (pos[k] < manifests[k].size() && (least < 0
+                        || compare(manifests[k], pos[k], manifests[least],
+                                pos[least]) < 0)) {
+                    least = k;
+                }
+            }
+            if (least < 0) {
+                return;
+            }
+            Manifest first = manifests[least];
+            int at = pos[least];
+            for (int k = 0; k < manifests.length; k++) {
+                found[k] = null;
+                if (pos[k] < manifests[k].size()
+                        && compare(manifests[k], pos[k], first, at) == 0) {
+                    found[k] = manifests[k].id(pos[k]);
+                    pos[k] += 1;
+                }
+            }
+            visitor.visit(first.path(at), found);
+        }
+    }
+
+    /** Compare the I-th path of A with the J-th path of B.
+     * @param a the first manifest.
+     * @param i a position in A.
+     * @param b the second manifest.
+     * @param j a position in B.
+     */
+    private static int compare(Manifest a, int i, Manifest b, int j) {
+        if (a.paths == b.paths) {
+            return Integer.compare(i, j);
+        }
+        return Arrays.compareUnsigned(a.paths.bytes, a.paths.offsets[i],
+                a.paths.offsets[i + 1], b.paths.bytes, b.paths.offsets[j],
+                b.paths.offsets[j + 1]);
+    }
+}
@@ -0,0 +1,156 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+* The on-disk indexes behind find. Under .gitlet/find/messages each
+* commit is filed by the SHA-1 of its whole message, and under
+* .gitlet/find/words by the SHA-1 of every word of its message. Both
+* are hash tables of 4096 bucket files named by the first three hex
+* digits of the key; a bucket is a list of 20-byte key and 20-byte
+* commit ID pairs that is only ever appended to. A lookup reads one
+* bucket instead of every commit. If .gitlet/find is missing it is
+* rebuilt from the commits in the object store.
+* @author Yuhan Dong
+ */
+class MessageIndex {
+
+    /** The directory of both indexes.*/
+    static final File DIR = new File(".gitlet/find");
+
+    /** The index of whole messages.*/
+    private static final File MESSAGES = new File(DIR, "messages");
+
+    /** The index of words.*/
+    private static final File WORDS = new File(DIR, "words");
+
+    /** Length of one bucket entry.*/
+    private static final int ENTRY = 2 * PackFile.ID_BYTES;
+
+    /** Record the commit ID with MESSAGE.
+     * @param message the commit message.
+     * @param id the full commit ID.
+     */
+    static void add(String message, String id) {
+        if (!DIR.exists()) {
+            rebuild();
+            return;
+        }
+        put(MESSAGES, Utils.sha1(message), id);
+        for (String word : words(message)) {
+            put(WORDS, Utils.sha1(word), id);
+        }
+    }
+
+    /** Return the sorted IDs of the commits whose message is MESSAGE.
+     * @param message the commit message.
+     */
+    static List<String> find(String message) {
+        if (!DIR.exists()) {
+            rebuild();
+        }
+        return new ArrayList<>(get(MESSAGES, Utils.sha1(message)));
+    }
+
+    /** Return the sorted IDs of the commits whose message contains
+     * every word of QUERY, ignoring case.
+     * @param query the words to look for.
+     */
+    static List<String> grep(String query) {
+        if (!DIR.exists()) {
+            rebuild();
+        }
+        TreeSet<String> result = null;
+        for (String word : words(query)) {
+            TreeSet<String> ids = get(WORDS, Utils.sha1(word));
+            if (result == null) {
+                result = ids;
+            } else {
+                result.retainAll(ids);
+            }
+        }
+        return result == null ? new ArrayList<>() : new ArrayList<>(result);
+    }
+
+    /** Return the distinct lower-case words of TEXT.
+     * @param text the text to split.
+     */
+    static List<String> words(String text) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String word : lower.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Append the pair KEY and ID to the right bucket of TABLE.
+     * @param table MESSAGES or WORDS.
+     * @param key the hex SHA-1 of the key.
+     * @param id the full commit ID.
+     */
+    private static void put(File table, String key, String id) {
+        byte[] entry = new byte[ENTRY];
+        System.arraycopy(PackFile.fromHex(key), 0, entry, 0,
+                PackFile.ID_BYTES);
+        System.arraycopy(PackFile.fromHex(id), 0, entry, PackFile.ID_BYTES,
+                PackFile.ID_BYTES);
+        try {
+            Files.write(new File(table, key.substring(0, 3)).toPath(), entry,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the commit IDs stored under KEY in TABLE.
+     * @param table MESSAGES or WORDS.
+     * @param key the hex SHA-1 of the key.
+     */
+    private static TreeSet<String> get(File table, String key) {
+        TreeSet<String> result = new TreeSet<>();
+        File bucket = new File(table, key.substring(0, 3));
+        if (!bucket.exists()) {
+            return result;
+        }
+        byte[] raw = Utils.readContents(bucket);
+        byte[] wanted = PackFile.fromHex(key);
+        for (int i = 0; i + ENTRY <= raw.length; i += ENTRY) {
+            if (Arrays.equals(raw, i, i + PackFile.ID_BYTES,
+                    wanted, 0, PackFile.ID_BYTES)) {
+                result.add(PackFile.toHex(Arrays.copyOfRange(raw,
+                        i + PackFile.ID_BYTES, i + ENTRY)));
+            }
+        }
+        return result;
+    }
+
+    /** Build both indexes from scratch out of every commit in
+     * the object store.
+     */
+    static void rebuild() {
+        File tmp = new File(DIR.getPath() + ".tmp");
+        Utils.deleteRecursively(tmp);
+        new File(tmp, "messages").mkdirs();
+        new File(tmp, "words").mkdirs();
+        for (String id : ObjectStore.ids(ObjectStore.COMMITS)) {
+            String message = Commits.read(id).getMessage();
+            put(new File(tmp, "messages"), Utils.sha1(message), id);
+            for (String word : words(message)) {
+                put(new File(tmp, "words"), Utils.sha1(word), id);
+            }
+        }
+        Utils.deleteRecursively(DIR);
+        tmp.renameTo(DIR);
+    }
+}
@@ -0,0 +1,148 @@
+package gitlet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+* The objects read from the store, shared by the whole process and
+* keyed by object ID. Objects never change once written, so an entry
+* never goes stale; it is only dropped when the cache grows past its
+* budget, least recently used first. The budget is in bytes of the
+* objects as they sit on the heap, approximated by the caller from
+* their stored size, and defaults to BUDGET unless the system property
+* gitlet.cache.bytes says otherwise. Objects larger than an eighth of
+* the budget are never kept, so one large blob does not push out
+* everything else.
+* @author Yuhan Dong
+ */
+class ObjectCache {
+
+    /** The default budget in bytes.*/
+    static final long BUDGET = 64L << 20;
+
+    /** The cache of this process.*/
+    private static final ObjectCache SHARED = new ObjectCache(
+            Long.getLong("gitlet.cache.bytes", BUDGET));
+
+    /** An object with its approximate size.*/
+    private static class Entry {
+
+        /** The object.*/
+        private final Object value;
+
+        /** Its approximate size in bytes.*/
+        private final long weight;
+
+        /** An entry for VALUE weighing WEIGHT bytes.
+         * @param value the object.
+         * @param weight its approximate size.
+         */
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** The entries in order of use, least recent first.*/
+    private final LinkedHashMap<String, Entry> entries =
+        new LinkedHashMap<>(256, 0.75f, true);
+
+    /** The budget in bytes.*/
+    private final long budget;
+
+    /** Total weight of the entries.*/
+    private long weight;
+
+    /** Number of lookups that found their object.*/
+    private long hits;
+
+    /** Number of lookups that did not.*/
+    private long misses;
+
+    /** Number of entries dropped to stay within the budget.*/
+    private long evictions;
+
+    /** A cache holding at most BUDGET bytes.
+     * @param budget the budget in bytes.
+     */
+    ObjectCache(long budget) {
+        this.budget = budget;
+    }
+
+    /** Return the cache of this process.*/
+    static ObjectCache shared() {
+        return SHARED;
+    }
+
+    /** Return the object ID as TYPE, or null if it is not cached.
+     * @param id the full object ID.
+     * @param type the class of the object.
+     */
+    synchronized <T> T get(String id, Class<T> type) {
+        Entry entry = entries.get(id);
+        if (entry == null || !type.isInstance(entry.value)) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return type.cast(entry.value);
+    }
+
+    /** Keep VALUE as the object ID, weighing WEIGHT bytes.
+     * @param id the full object ID.
+     * @param value the object.
+     * @param weight its approximate size in bytes.
+     */
+    synchronized void put(String id, Object value, long weight) {
+        remove(id);
+        if (weight > budget / 8) {
+            return;
+        }
+        entries.put(id, new Entry(value, weight));
+        this.weight += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (this.weight > budget) {
+            this.weight -= eldest.next().weight;
+            eldest.remove();
+            evictions += 1;
+        }
+    }
+
+    /** Drop the object ID if it is cached.
+     * @param id the full object ID.
+     */
+    synchronized void remove(String id) {
+        Entry old = entries.remove(id);
+        if (old != null) {
+            weight -= old.weight;
+        }
+    }
+
+    /** Return the number of lookups that found their object.*/
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /** Return the number of lookups that did not.*/
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Return the number of entries dropped to stay within
+     * the budget.
+     */
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Return the total weight of the cached objects.*/
+    synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache: %d objects, %d of %d bytes, "
+                + "%d hits, %d misses, %d evictions", entries.size(),
+                weight, budget, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,459 @@
+package gitlet;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+* The store for commits, trees, blobs and the chunks of large blobs.
+* Objects are first written loose, one file per object: commits in
+* .gitlet/commits, and the others under a directory named after the
+* first two characters of their ID in .gitlet/trees, .gitlet/blobs
+* and .gitlet/chunks. Repack moves them into packs under
+* .gitlet/packs, where DeltaCompressor stores versions of a file as
+* deltas against earlier ones. Reading looks at the loose file first
+* and then at the packs, so callers do not need to know where an
+* object lives.
+* Blobs written before the fanout directories existed are still
+* found as .gitlet/blobs/ID.txt.
+* @author Yuhan Dong
+ */
+class ObjectStore {
+
+    /** The kind of the commit objects.*/
+    static final String COMMITS = "commits";
+
+    /** The kind of the tree objects.*/
+    static final String TREES = "trees";
+
+    /** The kind of the blob objects.*/
+    static final String BLOBS = "blobs";
+
+    /** The kind of the chunks of blobs stored as chunks.*/
+    static final String CHUNKS = "chunks";
+
+    /** The directory holding the packs.*/
+    static final File PACKS = new File(".gitlet/packs");
+
+    /** The packs opened so far, null until they are first needed.*/
+    private static List<PackFile> packs;
+
+    /** Return the loose file of the object ID of the given KIND.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    static File looseFile(String kind, String id) {
+        if (!kind.equals(COMMITS)) {
+            return new File(".gitlet/" + kind + "/" + id.substring(0, 2) + "/"
+                    + id.substring(2));
+        }
+        return legacyFile(kind, id);
+    }
+
+    /** Return the file of the object ID of the given KIND in the
+     * flat layout, which commits still use.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    private static File legacyFile(String kind, String id) {
+        return new File(".gitlet/" + kind + "/" + id + ".txt");
+    }
+
+    /** Return the existing loose file of the object ID of the given
+     * KIND, or null if the object is not loose.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    private static File existingLooseFile(String kind, String id) {
+        File loose = looseFile(kind, id);
+        if (loose.exists()) {
+            return loose;
+        }
+        loose = legacyFile(kind, id);
+        return loose.exists() ? loose : null;
+    }
+
+    /** Return a stream over the stored bytes of the object ID of the
+     * given KIND, or throw IllegalArgumentException if there is no
+     * such object. The caller closes the stream.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    static InputStream open(String kind, String id) {
+        File loose = existingLooseFile(kind, id);
+        try {
+            if (loose != null) {
+                Trace.objectRead(loose.length());
+                return new FileInputStream(loose);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] bytes = readPacked(kind, id);
+        if (bytes == null) {
+            throw new IllegalArgumentException(looseFile(kind, id).getPath()
+                    + " (No such file or directory)");
+        }
+        Trace.objectRead(bytes.length);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /** Return the stored bytes of the object ID of the given KIND, or
+     * throw IllegalArgumentException if there is no such object.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    static byte[] readBytes(String kind, String id) {
+        File loose = existingLooseFile(kind, id);
+        byte[] bytes = loose != null ? Utils.readContents(loose)
+                : readPacked(kind, id);
+        if (bytes == null) {
+            throw new IllegalArgumentException(looseFile(kind, id).getPath()
+                    + " (No such file or directory)");
+        }
+        Trace.objectRead(bytes.length);
+        return bytes;
+    }
+
+    /** Write BYTES as the loose object ID of the given KIND.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     * @param bytes the encoded object.
+     */
+    static void writeBytes(String kind, String id, byte[] bytes) {
+        File file = looseFile(kind, id);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, bytes);
+        Trace.objectWritten(bytes.length);
+        ObjectCache.shared().remove(id);
+    }
+
+    /** Return true if the object ID of the given KIND exists.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    static boolean contains(String kind, String id) {
+        if (existingLooseFile(kind, id) != null) {
+            return true;
+        } else if (id.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        byte[] raw = PackFile.fromHex(id);
+        for (PackFile pack : packs()) {
+            if (pack.getIndexFile().getName().startsWith(kind + "-")
+                    && pack.find(raw) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the IDs of all objects of the given KIND, loose
+     * and packed, in sorted order.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     */
+    static List<String> ids(String kind) {
+        TreeSet<String> result = new TreeSet<>(looseIds(kind));
+        for (PackFile pack : packs()) {
+            if (pack.getIndexFile().getName().startsWith(kind + "-")) {
+                result.addAll(pack.ids());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return the IDs of the loose objects of the given KIND.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     */
+    private static List<String> looseIds(String kind) {
+        List<String> result = new ArrayList<>();
+        File dir = new File(".gitlet/" + kind);
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".txt")) {
+                    result.add(name.substring(0, name.length() - 4));
+                }
+            }
+        }
+        String[] fanout = dir.list();
+        if (!kind.equals(COMMITS) && fanout != null) {
+            for (String prefix : fanout) {
+                List<String> rest = Utils.plainFilenamesIn(
+                        new File(dir, prefix));
+                if (prefix.length() == 2 && rest != null) {
+                    for (String name : rest) {
+                        if (name.length() == Utils.UID_LENGTH - 2) {
+                            result.add(prefix + name);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the bytes of the packed object ID of the given KIND,
+     * or null if no pack holds it. A blob stored as a delta comes
+     * back inflated, as PackFile.read describes.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param id the full ID.
+     */
+    private static byte[] readPacked(String kind, String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return null;
+        }
+        byte[] raw = PackFile.fromHex(id);
+        for (PackFile pack : packs()) {
+            if (pack.getIndexFile().getName().startsWith(kind + "-")) {
+                int pos = pack.find(raw);
+                if (pos >= 0) {
+                    return pack.read(pos);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Forget the open packs, so that the pack directory is listed
+     * again when next needed.
+     */
+    static synchronized void reset() {
+        packs = null;
+    }
+
+    /** Return the packs of the repository, opening them if needed.*/
+    private static synchronized List<PackFile> packs() {
+        if (packs == null) {
+            packs = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(PACKS);
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        packs.add(new PackFile(new File(PACKS, name)));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Return the IDs of the objects of the given KIND that are not
+     * older than CUTOFF. A packed object is as old as its pack.
+     * @param kind COMMITS, TREES, BLOBS or CHUNKS.
+     * @param cutoff the time in milliseconds.
+     */
+    static List<String> recentIds(String kind, long cutoff) {
+        List<String> result = new ArrayList<>();
+        for (String id : looseIds(kind)) {
+            if (existingLooseFile(kind, id).lastModified() >= cutoff) {
+                result.add(id);
+            }
+        }
+        for (PackFile pack : packs()) {
+            if (pack.getIndexFile().getName().startsWith(kind + "-")
+                    && pack.getPackFile().lastModified() >= cutoff) {
+                result.addAll(pack.ids());
+            }
+        }
+        return result;
+    }
+
+    /** Return true if some blob is loose or in a pack written before
+     * blobs were stored as deltas.
+     */
+    private static boolean unpackedBlobs() {
+        for (PackFile pack : packs()) {
+            if (pack.getIndexFile().getName().startsWith(BLOBS + "-")
+                    && pack.version() < PackFile.DELTA_VERSION) {
+                return true;
+            }
+        }
+        return !looseIds(BLOBS).isEmpty();
+    }
+
+    /** Move every loose object and every existing pack of each kind
+     * into one new pack per kind, then delete what was copied.
+     */
+    static void repack() {
+        repack(null, Set.of(), 0);
+    }
+
+    /** Move the loose objects and the packs of each kind into one new
+     * pack per kind, keeping only the objects whose ID is in KEEP, and
+     * delete the rest unless they are in SPARE or not older than
+     * CUTOFF. Those are left loose, or unpacked into loose files as
+     * old as their pack, so that they still expire later. Blobs that
+     * were loose or in packs without deltas may become deltas; a delta
+     * whose base is deleted is stored whole. The objects are streamed
+     * from where they are into the new pack, so only one is in memory
+     * at a time. Return the number of objects deleted.
+     * @param keep the IDs to pack, or null to pack every object.
+     * @param spare the IDs to leave loose.
+     * @param cutoff the time in milliseconds from which objects that
+     *               are not kept are left loose.
+     */
+    static int repack(Set<String> keep, Set<String> spare, long cutoff) {
+        PACKS.mkdirs();
+        int dropped = 0;
+        Map<String, String> history = Map.of();
+        if (unpackedBlobs()) {
+            history = DeltaCompressor.history();
+        }
+        for (String kind : new String[] {COMMITS, TREES, BLOBS, CHUNKS}) {
+            TreeMap<String, Source> objects = new TreeMap<>();
+            TreeMap<String, Source> unpacked = new TreeMap<>();
+            Map<String, Long> times = new HashMap<>();
+            List<PackFile> old = new ArrayList<>();
+            Set<String> fresh = new HashSet<>();
+            Set<String> bases = new HashSet<>();
+            int before = dropped;
+            for (PackFile pack : packs()) {
+                if (pack.getIndexFile().getName().startsWith(kind + "-")) {
+                    old.add(pack);
+                    long time = pack.getPackFile().lastModified();
+                    boolean plain = kind.equals(BLOBS)
+                        && pack.version() < PackFile.DELTA_VERSION;
+                    for (int i = 0; i < pack.size(); i++) {
+                        String id = pack.idAt(i);
+                        if (keep == null || keep.contains(id)) {
+                            objects.put(id, new Source(pack, i));
+                            if (plain) {
+                                fresh.add(id);
+                            } else if (kind.equals(BLOBS)) {
+                                String base = pack.baseAt(i);
+                                if (base != null) {
+                                    bases.add(base);
+                                }
+                            }
+                        } else if (time >= cutoff || spare.contains(id)) {
+                            unpacked.put(id, new Source(pack, i));
+                            times.put(id, time);
+                        } else {
+                            dropped += 1;
+                        }
+                    }
+                }
+            }
+            List<String> loose = looseIds(kind);
+            List<String> packed = new ArrayList<>();
+            for (String id : loose) {
+                File file = existingLooseFile(kind, id);
+                if (keep == null || keep.contains(id)) {
+                    objects.put(id, new Source(file));
+                    packed.add(id);
+                    fresh.add(id);
+                } else if (!unpacked.containsKey(id) && !spare.contains(id)
+                        && file.lastModified() < cutoff) {
+                    packed.add(id);
+                    dropped += 1;
+                }
+            }
+            if (packed.isEmpty() && old.size() <= 1 && dropped == before
+                    && unpacked.isEmpty() && fresh.isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<String, Source> object : unpacked.entrySet()) {
+                File file = looseFile(kind, object.getKey());
+                file.getParentFile().mkdirs();
+                Utils.writeContents(file, object.getValue().whole());
+                file.setLastModified(times.get(object.getKey()));
+            }
+            Function<String, byte[]> stored = id -> {
+                Source source = objects.get(id);
+                String base = source.base();
+                return base != null && !objects.containsKey(base)
+                    ? source.whole() : source.read();
+            };
+            Map<String, byte[]> deltas = Map.of();
+            if (kind.equals(BLOBS)) {
+                deltas = DeltaCompressor.compress(objects.keySet(), stored,
+                        bases, fresh, history);
+            }
+            File written = null;
+            if (!objects.isEmpty()) {
+                PackFile.Writer out = new PackFile.Writer(PACKS, kind,
+                        objects.size());
+                for (String id : objects.keySet()) {
+                    byte[] delta = deltas.get(id);
+                    out.add(id, delta != null ? delta : stored.apply(id));
+                }
+                written = out.finish();
+            }
+            for (PackFile pack : old) {
+                if (!pack.getIndexFile().equals(written)) {
+                    pack.getIndexFile().delete();
+                    pack.getPackFile().delete();
+                }
+            }
+            for (String id : packed) {
+                File file = existingLooseFile(kind, id);
+                file.delete();
+                if (!kind.equals(COMMITS)) {
+                    looseFile(kind, id).getParentFile().delete();
+                }
+            }
+        }
+        reset();
+        return dropped;
+    }
+
+    /** Where an object being repacked is read from: a loose file or a
+     * position in a pack. Only the place is kept, so repacking holds
+     * one object in memory at a time.
+     */
+    private static class Source {
+        /** The loose file, or null for a packed object.*/
+        private final File file;
+        /** The pack, or null for a loose object.*/
+        private final PackFile pack;
+        /** The position of the object in the table of PACK.*/
+        private final int pos;
+
+        /** The loose object in FILE.
+         * @param file the loose file.
+         */
+        Source(File file) {
+            this.file = file;
+            this.pack = null;
+            this.pos = -1;
+        }
+
+        /** The object at position POS of the table of PACK.
+         * @param pack the pack.
+         * @param pos the position in its ID table.
+         */
+        Source(PackFile pack, int pos) {
+            this.file = null;
+            this.pack = pack;
+            this.pos = pos;
+        }
+
+        /** Return the object as stored, a delta if it is one.*/
+        byte[] read() {
+            return file != null ? Utils.readContents(file) : pack.entry(pos);
+        }
+
+        /** Return the object as it would be stored loose.*/
+        byte[] whole() {
+            return file != null ? Utils.readContents(file) : pack.whole(pos);
+        }
+
+        /** Return the ID of the base of the object, or null if it is
+         * not stored as a delta.
+         */
+        String base() {
+            return file != null ? null : pack.baseAt(pos);
+        }
+    }
+}
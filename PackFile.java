@@ -0,0 +1,576 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+* A pack holds many objects of one kind in a single data file,
+* with a sorted index next to it. Both files are memory-mapped,
+* so finding an object is a binary search in the index and
+* reading it is a copy out of the data file, with no directory
+* lookups or file opens per object. The data file is mapped in
+* regions of at most REGION bytes, so it may grow past 2 GiB.
+*
+* The index is the magic GIDX, a version, a fanout table of 256
+* ints where entry i counts the IDs whose first byte is at most i,
+* the sorted 20-byte IDs, and one long offset per ID into the data
+* file. The data file is the magic GPAK, a version, the object
+* count and then each object as an int length and its bytes.
+*
+* Since version 2 a blob may instead be stored as a delta against
+* another object of the same pack, its base: the byte DELTA, the
+* 20-byte ID of the base and the deflated Delta from the inflated base
+* to the inflated blob. No stored object starts with DELTA, since
+* deflated, serialized and encoded objects all start otherwise, so
+* version 1 packs read the same. Rebuilding an object applies the
+* deltas of its chain to the object at the end of it, and every object
+* rebuilt on the way is kept in a cache of its own, so reading the
+* versions of a file one after another applies one delta each.
+* @author Yuhan Dong
+ */
+class PackFile {
+
+    /** Magic number of the index file.*/
+    private static final int INDEX_MAGIC = 0x47494458;
+
+    /** Magic number of the data file.*/
+    private static final int PACK_MAGIC = 0x4750414b;
+
+    /** Format version of both files.*/
+    private static final int VERSION = 2;
+
+    /** The first version whose packs may hold deltas.*/
+    static final int DELTA_VERSION = 2;
+
+    /** The first byte of an object stored as a delta.*/
+    static final byte DELTA = 1;
+
+    /** The first byte of an object that read returns inflated.*/
+    static final byte RAW = 0;
+
+    /** Bytes added to the length of a cached object for the array
+     * header.
+     */
+    private static final long ARRAY_OVERHEAD = 16;
+
+    /** The objects rebuilt from deltas, and the bases they were
+     * rebuilt from, inflated. The budget defaults to that of the
+     * shared cache unless the system property gitlet.deltacache.bytes
+     * says otherwise.
+     */
+    private static final ObjectCache BASES = new ObjectCache(
+            Long.getLong("gitlet.deltacache.bytes", ObjectCache.BUDGET));
+
+    /** Length of an ID in bytes.*/
+    static final int ID_BYTES = 20;
+
+    /** Size of the index header: magic, version and fanout.*/
+    private static final int FANOUT_END = 8 + 256 * 4;
+
+    /** The most bytes of the data file mapped as one buffer.*/
+    private static final long REGION = 1L << 30;
+
+    /** The data file.*/
+    private final File packFile;
+
+    /** The index file.*/
+    private final File indexFile;
+
+    /** The mapped index.*/
+    private final MappedByteBuffer index;
+
+    /** The mapped data file, REGION bytes per buffer but the last.*/
+    private final MappedByteBuffer[] data;
+
+    /** Number of objects in the pack.*/
+    private final int count;
+
+    /** Open the pack whose index is INDEXFILE.
+     * @param indexFile the .idx file of the pack.
+     */
+    PackFile(File indexFile) {
+        this.indexFile = indexFile;
+        String name = indexFile.getName();
+        packFile = new File(indexFile.getParentFile(),
+                name.substring(0, name.length() - 4) + ".pack");
+        MappedByteBuffer[] indexRegions = map(indexFile, Integer.MAX_VALUE);
+        if (indexRegions.length > 1) {
+            throw Utils.error("Pack index %s is too large.", name);
+        }
+        index = indexRegions[0];
+        data = map(packFile, REGION);
+        if (index.getInt(0) != INDEX_MAGIC || dataInt(0) != PACK_MAGIC) {
+            throw Utils.error("Corrupt pack %s.", name);
+        }
+        count = index.getInt(8 + 255 * 4);
+    }
+
+    /** Return FILE mapped read-only into memory, in buffers of SIZE
+     * bytes but the last.
+     * @param file the file to map.
+     * @param size the most bytes of a buffer.
+     */
+    private static MappedByteBuffer[] map(File file, long size) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long length = channel.size();
+            MappedByteBuffer[] result =
+                new MappedByteBuffer[(int) Math.max(1, (length + size - 1)
+                        / size)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        i * size, Math.min(size, length - i * size));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copy the bytes of the data file from POSITION on into DEST,
+     * across regions if need be.
+     * @param position where the bytes start in the data file.
+     * @param dest where they go, filled whole.
+     */
+    private void readData(long position, byte[] dest) {
+        int done = 0;
+        while (done < dest.length) {
+            MappedByteBuffer region = data[(int) (position / REGION)];
+            int start = (int) (position % REGION);
+            int n = Math.min(dest.length - done, region.limit() - start);
+            region.get(start, dest, done, n);
+            done += n;
+            position += n;
+        }
+    }
+
+    /** Return the int of the data file at POSITION.
+     * @param position where the int starts in the data file.
+     */
+    private int dataInt(long position) {
+        byte[] bytes = new byte[4];
+        readData(position, bytes);
+        return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16
+            | (bytes[2] & 0xff) << 8 | bytes[3] & 0xff;
+    }
+
+    /** Return where the object at position POS of the table starts in
+     * the data file.
+     * @param pos the position in the ID table.
+     */
+    private long offsetAt(int pos) {
+        return index.getLong(FANOUT_END + count * ID_BYTES + pos * 8);
+    }
+
+    /** Return the number of objects in this pack.*/
+    int size() {
+        return count;
+    }
+
+    /** Return the format version of this pack.*/
+    int version() {
+        return dataInt(4);
+    }
+
+    /** Return the index file of this pack.*/
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    /** Return the data file of this pack.*/
+    File getPackFile() {
+        return packFile;
+    }
+
+    /** Return the position of ID in the sorted ID table, or -1 if
+     * this pack does not contain it.
+     * @param id the ID as 20 bytes.
+     */
+    int find(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : index.getInt(8 + (first - 1) * 4);
+        int hi = index.getInt(8 + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, id);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compare the ID at position POS of the table with ID.
+     * @param pos the position in the ID table.
+     * @param id the ID as 20 bytes.
+     */
+    private int compareAt(int pos, byte[] id) {
+        int base = FANOUT_END + pos * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i++) {
+            int cmp = (index.get(base + i) & 0xff) - (id[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Return the bytes of the object at position POS of the table as
+     * they are stored in the pack, which for a delta are the byte
+     * DELTA, the ID of its base and the deflated delta.
+     * @param pos the position in the ID table.
+     */
+    byte[] entry(int pos) {
+        long offset = offsetAt(pos);
+        byte[] result = new byte[dataInt(offset)];
+        readData(offset + 4, result);
+        return result;
+    }
+
+    /** Return the ID of the base of the object at position POS of the
+     * table, or null if it is not stored as a delta, without reading
+     * the rest of the object.
+     * @param pos the position in the ID table.
+     */
+    String baseAt(int pos) {
+        long offset = offsetAt(pos);
+        byte[] head = new byte[1 + ID_BYTES];
+        if (dataInt(offset) < head.length) {
+            return null;
+        }
+        readData(offset + 4, head);
+        return baseOf(head);
+    }
+
+    /** Return the bytes of the object at position POS of the table.
+     * An object stored as a delta is rebuilt and returned inflated,
+     * behind the byte RAW, rather than deflated again.
+     * @param pos the position in the ID table.
+     */
+    byte[] read(int pos) {
+        byte[] result = entry(pos);
+        if (result[0] != DELTA) {
+            return result;
+        }
+        byte[] object = object(pos);
+        result = new byte[object.length + 1];
+        result[0] = RAW;
+        System.arraycopy(object, 0, result, 1, object.length);
+        return result;
+    }
+
+    /** Return the bytes of the object at position POS of the table as
+     * they would be stored loose, rebuilding and deflating an object
+     * stored as a delta.
+     * @param pos the position in the ID table.
+     */
+    byte[] whole(int pos) {
+        byte[] result = entry(pos);
+        return result[0] != DELTA ? result : deflate(object(pos));
+    }
+
+    /** Return the inflated object at position POS of the table, which
+     * is stored as a delta or is the base of one.
+     * @param pos the position in the ID table.
+     */
+    private byte[] object(int pos) {
+        String id = idAt(pos);
+        byte[] result = BASES.get(id, byte[].class);
+        if (result != null) {
+            return result;
+        }
+        byte[] entry = entry(pos);
+        String base = baseOf(entry);
+        if (base == null) {
+            result = inflate(entry, 0);
+        } else {
+            int basePos = find(fromHex(base));
+            if (basePos < 0) {
+                throw Utils.error("Corrupt pack %s.", packFile.getName());
+            }
+            result = Delta.apply(object(basePos), deltaOf(entry));
+        }
+        BASES.put(id, result, ARRAY_OVERHEAD + result.length);
+        return result;
+    }
+
+    /** Return the ID of the base of ENTRY, or null if it is not a
+     * delta.
+     * @param entry an object as stored in a pack.
+     */
+    static String baseOf(byte[] entry) {
+        if (entry[0] != DELTA) {
+            return null;
+        }
+        return toHex(Arrays.copyOfRange(entry, 1, 1 + ID_BYTES));
+    }
+
+    /** Return the delta of ENTRY, which is stored as a delta.
+     * @param entry an object as stored in a pack.
+     */
+    static byte[] deltaOf(byte[] entry) {
+        return inflate(entry, 1 + ID_BYTES);
+    }
+
+    /** Return the entry of an object stored as DELTA against the
+     * object BASE.
+     * @param base the ID of the base.
+     * @param delta the delta from the inflated base.
+     */
+    static byte[] deltaEntry(String base, byte[] delta) {
+        byte[] packed = deflate(delta);
+        byte[] result = new byte[1 + ID_BYTES + packed.length];
+        result[0] = DELTA;
+        System.arraycopy(fromHex(base), 0, result, 1, ID_BYTES);
+        System.arraycopy(packed, 0, result, 1 + ID_BYTES, packed.length);
+        return result;
+    }
+
+    /** Return the bytes of BYTES from OFFSET on, inflated.
+     * @param bytes the deflated bytes.
+     * @param offset where they start.
+     */
+    static byte[] inflate(byte[] bytes, int offset) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes, offset, bytes.length - offset);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                4 * (bytes.length - offset));
+        byte[] buffer = new byte[1 << 16];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput()
+                        || inflater.needsDictionary())) {
+                    throw Utils.error("Corrupt deflated object.");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException excp) {
+            throw Utils.error("Corrupt deflated object.");
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /** Return BYTES deflated.
+     * @param bytes the bytes.
+     */
+    static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                bytes.length / 2 + 64);
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Return the ID at position POS of the table as hex.
+     * @param pos the position in the ID table.
+     */
+    String idAt(int pos) {
+        byte[] id = new byte[ID_BYTES];
+        index.get(FANOUT_END + pos * ID_BYTES, id);
+        return toHex(id);
+    }
+
+    /** Return all IDs of this pack in sorted order.*/
+    List<String> ids() {
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(idAt(i));
+        }
+        return result;
+    }
+
+    /** Writes a new pack one object at a time, so that no more than
+     * one object is held in memory. The objects must be added in
+     * increasing order of ID. The data file is written under a
+     * temporary name and, once complete, renamed to PREFIX followed by
+     * the SHA-1 of the IDs and bytes of its objects and the format
+     * version; the index is renamed into place last, so a pack is
+     * never visible before it is complete, and a pack that gets the
+     * name of an existing one has the same content.
+     */
+    static class Writer {
+
+        /** The pack directory.*/
+        private final File dir;
+
+        /** The kind of the objects.*/
+        private final String prefix;
+
+        /** The data file while it is written.*/
+        private final File tmp;
+
+        /** The data file being written.*/
+        private final DataOutputStream out;
+
+        /** The IDs added so far, 20 bytes each.*/
+        private final byte[] ids;
+
+        /** Where each object added starts in the data file.*/
+        private final long[] offsets;
+
+        /** The hash the pack is named after.*/
+        private final MessageDigest digest;
+
+        /** The number of objects added.*/
+        private int added;
+
+        /** The length of the data file so far.*/
+        private long length;
+
+        /** A writer of a pack of COUNT objects in DIR, named after
+         * PREFIX.
+         * @param dir the pack directory.
+         * @param prefix the kind of the objects.
+         * @param count the number of objects that will be added.
+         */
+        Writer(File dir, String prefix, int count) {
+            this.dir = dir;
+            this.prefix = prefix;
+            ids = new byte[count * ID_BYTES];
+            offsets = new long[count];
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+                tmp = File.createTempFile(prefix + "-", ".pack.tmp", dir);
+                out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(tmp.toPath())));
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException(
+                        "System does not support SHA-1");
+            }
+            length = 12;
+        }
+
+        /** Append the object ID stored as BYTES, ID being greater
+         * than every ID added before.
+         * @param id the hex ID.
+         * @param bytes the object as stored.
+         */
+        void add(String id, byte[] bytes) {
+            byte[] raw = fromHex(id);
+            if (added > 0 && Arrays.compareUnsigned(ids,
+                    (added - 1) * ID_BYTES, added * ID_BYTES,
+                    raw, 0, ID_BYTES) >= 0) {
+                throw new IllegalArgumentException(
+                        "Pack objects out of order at " + id);
+            }
+            System.arraycopy(raw, 0, ids, added * ID_BYTES, ID_BYTES);
+            offsets[added] = length;
+            added += 1;
+            digest.update(raw);
+            digest.update(bytes);
+            try {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            length += 4 + bytes.length;
+        }
+
+        /** Close the data file, write the index and return the index
+         * file. All the objects must have been added.
+         */
+        File finish() {
+            if (added != offsets.length) {
+                throw new IllegalArgumentException("Pack of "
+                        + offsets.length + " objects got " + added);
+            }
+            digest.update(Integer.toString(VERSION).getBytes(
+                    StandardCharsets.UTF_8));
+            String name = prefix + "-" + toHex(digest.digest());
+            File pack = new File(dir, name + ".pack");
+            File idx = new File(dir, name + ".idx");
+            try {
+                out.close();
+                Files.move(tmp.toPath(), pack.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                File idxTmp = Utils.temporary(idx);
+                try (DataOutputStream index = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(
+                                idxTmp.toPath())))) {
+                    index.writeInt(INDEX_MAGIC);
+                    index.writeInt(VERSION);
+                    int[] fanout = new int[256];
+                    for (int i = 0; i < added; i++) {
+                        fanout[ids[i * ID_BYTES] & 0xff] += 1;
+                    }
+                    int total = 0;
+                    for (int i = 0; i < 256; i++) {
+                        total += fanout[i];
+                        index.writeInt(total);
+                    }
+                    index.write(ids);
+                    for (long offset : offsets) {
+                        index.writeLong(offset);
+                    }
+                }
+                Files.move(idxTmp.toPath(), idx.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return idx;
+        }
+    }
+
+    /** Return the 40-character hex ID as 20 bytes.
+     * @param id the hex ID.
+     */
+    static byte[] fromHex(String id) {
+        byte[] result = new byte[id.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) (Character.digit(id.charAt(2 * i), 16) << 4
+                    | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
+    /** Return BYTES as a lower-case hex string.
+     * @param bytes the bytes to convert.
+     */
+    static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            result[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+}
@@ -0,0 +1,214 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* The staging area, kept in .gitlet/staging. It maps each path staged
+* for addition to the ID of its blob, which add already saved in the
+* store, and records each path staged for removal. A commit therefore
+* only reads this file and writes the commit and its trees; no file
+* content is read again.
+*
+* The file is the magic GSTG, a version, the entry count and then each
+* entry as its path, a byte that is 1 for an addition and 0 for a
+* removal, and for an addition the 20-byte blob ID. Repositories that
+* still stage copies of the files in the directories staging/add and
+* staging/rm are converted when the staging area is first loaded.
+* @author Yuhan Dong
+ */
+class Staging {
+
+    /** The staging file.*/
+    static final File FILE = new File(".gitlet/staging");
+
+    /** Magic number of the staging file.*/
+    private static final int MAGIC = 0x47535447;
+
+    /** Format version of the staging file.*/
+    private static final int VERSION = 1;
+
+    /** The blob ID of each path staged for addition, and null for
+     * each path staged for removal, sorted by path.
+     */
+    private final TreeMap<String, String> entries = new TreeMap<>();
+
+    /** An empty staging area.*/
+    private Staging() {
+    }
+
+    /** Return the staging area of the repository.*/
+    static Staging load() {
+        Staging result = new Staging();
+        if (FILE.isDirectory()) {
+            result.convert();
+        } else if (FILE.isFile()) {
+            result.read();
+        }
+        return result;
+    }
+
+    /** Read the staging file.*/
+    private void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(FILE.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Corrupt staging area.");
+            } else if (in.readInt() != VERSION) {
+                throw Utils.error("The staging area has an unknown format "
+                        + "version.");
+            }
+            int count = in.readInt();
+            byte[] id = new byte[PackFile.ID_BYTES];
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                if (in.readBoolean()) {
+                    in.readFully(id);
+                    entries.put(path, PackFile.toHex(id));
+                } else {
+                    entries.put(path, null);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Take the entries from the staging/add and staging/rm
+     * directories of an older repository, saving the blobs of the
+     * copies staged for addition, and replace the directories with
+     * the staging file.
+     */
+    private void convert() {
+        File add = new File(FILE, "add");
+        File rm = new File(FILE, "rm");
+        for (String name : Utils.plainFilenamesBelow(add)) {
+            entries.put(name, Blobs.store(new File(add, name)));
+        }
+        for (String name : Utils.plainFilenamesBelow(rm)) {
+            entries.put(name, null);
+        }
+        Utils.deleteRecursively(FILE);
+        save();
+    }
+
+    /** Write the staging file.*/
+    void save() {
+        File tmp = Utils.temporary(FILE);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(
+                            tmp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, String> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeBoolean(e.getValue() != null);
+                    if (e.getValue() != null) {
+                        out.write(PackFile.fromHex(e.getValue()));
+                    }
+                }
+            }
+            Trace.fileWritten(tmp.length());
+            Files.move(tmp.toPath(), FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stage NAME for addition with the blob ID, which must already
+     * be in the store.
+     * @param name the path of the file in the repository.
+     * @param id the blob ID.
+     */
+    void add(String name, String id) {
+        entries.put(name, id);
+    }
+
+    /** Stage NAME for removal.
+     * @param name the path of the file in the repository.
+     */
+    void remove(String name) {
+        entries.put(name, null);
+    }
+
+    /** Unstage NAME, whether it was staged for addition or removal.
+     * @param name the path of the file in the repository.
+     */
+    void unstage(String name) {
+        entries.remove(name);
+    }
+
+    /** Unstage everything.*/
+    void clear() {
+        entries.clear();
+    }
+
+    /** Return true if nothing is staged.*/
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /** Return the blob ID NAME is staged for addition with, or null
+     * if it is not staged for addition.
+     * @param name the path of the file in the repository.
+     */
+    String get(String name) {
+        return entries.get(name);
+    }
+
+    /** Return true if NAME is staged for addition.
+     * @param name the path of the file in the repository.
+     */
+    boolean isAdded(String name) {
+        return entries.get(name) != null;
+    }
+
+    /** Return true if NAME is staged for removal.
+     * @param name the path of the file in the repository.
+     */
+    boolean isRemoved(String name) {
+        return entries.containsKey(name) && entries.get(name) == null;
+    }
+
+    /** Return the paths staged for addition, sorted.*/
+    List<String> added() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> e : entries.entrySet()) {
+            if (e.getValue() != null) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Return the paths staged for removal, sorted.*/
+    List<String> removed() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> e : entries.entrySet()) {
+            if (e.getValue() == null) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Return what is staged: the blob ID of each path staged for
+     * addition and null for each path staged for removal.
+     */
+    Map<String, String> changes() {
+        return new TreeMap<>(entries);
+    }
+}
@@ -0,0 +1,296 @@
+package gitlet;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+* Counters and phase timings of one command. Reads and writes of
+* objects in the store and of whole files, bytes hashed and files
+* stat'ed are counted, and the named phases of a command are timed.
+* With --trace before the command, or GITLET_TRACE set in the
+* environment, a summary is printed to standard error when the command
+* ends. Phases and commands are also emitted as the JFR events
+* gitlet.Phase and gitlet.Command, so a flight recording shows them
+* in JDK Mission Control; the events cost nothing unless a recording
+* is running.
+* @author Yuhan Dong
+ */
+final class Trace {
+
+    /** A timed section of a command, ended when it is done.*/
+    static final class Phase {
+
+        /** The phase name.*/
+        private final String name;
+
+        /** The time the phase started, from System.nanoTime.*/
+        private final long start = System.nanoTime();
+
+        /** The JFR event of the phase.*/
+        private final PhaseEvent event = new PhaseEvent();
+
+        /** A phase named NAME, starting now.
+         * @param name the phase name.
+         */
+        private Phase(String name) {
+            this.name = name;
+            event.phase = name;
+            event.begin();
+        }
+
+        /** End this phase and add its time to the phase totals.*/
+        void end() {
+            long elapsed = System.nanoTime() - start;
+            long[] time = TIMES.computeIfAbsent(name, k -> new long[2]);
+            synchronized (time) {
+                time[0] += 1;
+                time[1] += elapsed;
+            }
+            event.commit();
+        }
+    }
+
+    /** The JFR event of a phase.*/
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    static class PhaseEvent extends Event {
+
+        /** The phase name.*/
+        @Label("Phase")
+        String phase;
+    }
+
+    /** The JFR event of a command, with its counters.*/
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    static class CommandEvent extends Event {
+
+        /** The command name.*/
+        @Label("Command")
+        String command;
+
+        /** Number of objects read from the store.*/
+        @Label("Object Reads")
+        long objectReads;
+
+        /** Bytes of the objects read.*/
+        @Label("Object Bytes Read")
+        @DataAmount
+        long objectBytesRead;
+
+        /** Number of objects written to the store.*/
+        @Label("Object Writes")
+        long objectWrites;
+
+        /** Bytes of the objects written.*/
+        @Label("Object Bytes Written")
+        @DataAmount
+        long objectBytesWritten;
+
+        /** Number of whole files read.*/
+        @Label("File Reads")
+        long fileReads;
+
+        /** Bytes of the files read.*/
+        @Label("File Bytes Read")
+        @DataAmount
+        long fileBytesRead;
+
+        /** Number of whole files written.*/
+        @Label("File Writes")
+        long fileWrites;
+
+        /** Bytes of the files written.*/
+        @Label("File Bytes Written")
+        @DataAmount
+        long fileBytesWritten;
+
+        /** Bytes hashed with SHA-1.*/
+        @Label("Bytes Hashed")
+        @DataAmount
+        long hashed;
+
+        /** Number of files stat'ed.*/
+        @Label("Files Stat'ed")
+        long stats;
+    }
+
+    /** Number of objects read from the store.*/
+    private static final LongAdder OBJECT_READS = new LongAdder();
+
+    /** Bytes of the objects read.*/
+    private static final LongAdder OBJECT_BYTES_READ = new LongAdder();
+
+    /** Number of objects written to the store.*/
+    private static final LongAdder OBJECT_WRITES = new LongAdder();
+
+    /** Bytes of the objects written.*/
+    private static final LongAdder OBJECT_BYTES_WRITTEN = new LongAdder();
+
+    /** Number of whole files read.*/
+    private static final LongAdder FILE_READS = new LongAdder();
+
+    /** Bytes of the files read.*/
+    private static final LongAdder FILE_BYTES_READ = new LongAdder();
+
+    /** Number of whole files written.*/
+    private static final LongAdder FILE_WRITES = new LongAdder();
+
+    /** Bytes of the files written.*/
+    private static final LongAdder FILE_BYTES_WRITTEN = new LongAdder();
+
+    /** Bytes hashed with SHA-1.*/
+    private static final LongAdder HASHED = new LongAdder();
+
+    /** Number of files stat'ed.*/
+    private static final LongAdder STATS = new LongAdder();
+
+    /** The number of runs and total nanoseconds of each phase.*/
+    private static final Map<String, long[]> TIMES =
+        new ConcurrentHashMap<>();
+
+    /** True if the summary is printed when a command ends.*/
+    private static boolean enabled;
+
+    /** The command being run.*/
+    private static String command;
+
+    /** The time the command started, from System.nanoTime.*/
+    private static long start;
+
+    /** The JFR event of the command being run.*/
+    private static CommandEvent event;
+
+    /** Not instantiable.*/
+    private Trace() {
+    }
+
+    /** Clear the counters and start timing COMMAND. The summary is
+     * printed at the end if TRACE is true or GITLET_TRACE is set.
+     * @param name the command name.
+     * @param trace true if --trace was given.
+     */
+    static void begin(String name, boolean trace) {
+        enabled = trace || requested();
+        for (LongAdder counter : new LongAdder[] {OBJECT_READS,
+            OBJECT_BYTES_READ, OBJECT_WRITES, OBJECT_BYTES_WRITTEN,
+            FILE_READS, FILE_BYTES_READ, FILE_WRITES, FILE_BYTES_WRITTEN,
+            HASHED, STATS}) {
+            counter.reset();
+        }
+        TIMES.clear();
+        command = name;
+        event = new CommandEvent();
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    /** Return true if GITLET_TRACE is set in the environment to
+     * anything but the empty string or 0.
+     */
+    static boolean requested() {
+        String env = System.getenv("GITLET_TRACE");
+        return env != null && !env.isEmpty() && !env.equals("0");
+    }
+
+    /** Emit the command event and print the summary to OUT if
+     * tracing is on.
+     * @param out where the summary goes.
+     */
+    static void end(PrintStream out) {
+        long elapsed = System.nanoTime() - start;
+        event.command = command;
+        event.objectReads = OBJECT_READS.sum();
+        event.objectBytesRead = OBJECT_BYTES_READ.sum();
+        event.objectWrites = OBJECT_WRITES.sum();
+        event.objectBytesWritten = OBJECT_BYTES_WRITTEN.sum();
+        event.fileReads = FILE_READS.sum();
+        event.fileBytesRead = FILE_BYTES_READ.sum();
+        event.fileWrites = FILE_WRITES.sum();
+        event.fileBytesWritten = FILE_BYTES_WRITTEN.sum();
+        event.hashed = HASHED.sum();
+        event.stats = STATS.sum();
+        event.commit();
+        if (!enabled) {
+            return;
+        }
+        out.printf("trace: %s %.3f ms%n", command, elapsed / 1e6);
+        for (Map.Entry<String, long[]> phase
+                 : new TreeMap<>(TIMES).entrySet()) {
+            out.printf("  phase %-20s %6d x %10.3f ms%n", phase.getKey(),
+                    phase.getValue()[0], phase.getValue()[1] / 1e6);
+        }
+        out.printf("  object reads   %8d %14d bytes%n", event.objectReads,
+                event.objectBytesRead);
+        out.printf("  object writes  %8d %14d bytes%n", event.objectWrites,
+                event.objectBytesWritten);
+        out.printf("  file reads     %8d %14d bytes%n", event.fileReads,
+                event.fileBytesRead);
+        out.printf("  file writes    %8d %14d bytes%n", event.fileWrites,
+                event.fileBytesWritten);
+        out.printf("  sha1 hashed             %14d bytes%n", event.hashed);
+        out.printf("  files stat'ed  %8d%n", event.stats);
+        out.flush();
+    }
+
+    /** Return a phase named NAME that starts now, to be ended when
+     * it is done, in a finally block.
+     * @param name the phase name.
+     */
+    static Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    /** Count an object of BYTES bytes read from the store.
+     * @param bytes its stored size.
+     */
+    static void objectRead(long bytes) {
+        OBJECT_READS.increment();
+        OBJECT_BYTES_READ.add(bytes);
+    }
+
+    /** Count an object of BYTES bytes written to the store.
+     * @param bytes its stored size.
+     */
+    static void objectWritten(long bytes) {
+        OBJECT_WRITES.increment();
+        OBJECT_BYTES_WRITTEN.add(bytes);
+    }
+
+    /** Count a whole file of BYTES bytes read.
+     * @param bytes its size.
+     */
+    static void fileRead(long bytes) {
+        FILE_READS.increment();
+        FILE_BYTES_READ.add(bytes);
+    }
+
+    /** Count a whole file of BYTES bytes written.
+     * @param bytes its size.
+     */
+    static void fileWritten(long bytes) {
+        FILE_WRITES.increment();
+        FILE_BYTES_WRITTEN.add(bytes);
+    }
+
+    /** Count BYTES bytes hashed with SHA-1.
+     * @param bytes the number of bytes.
+     */
+    static void hashed(long bytes) {
+        HASHED.add(bytes);
+    }
+
+    /** Count a file stat'ed.*/
+    static void stat() {
+        STATS.increment();
+    }
+}
@@ -1,33 +1,31 @@
 package gitlet;
 import java.io.File;
-import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
-* Directory structures mapping names to reference to blobs and
-* other trees (subdirectories)(CS61B guidelines).
+* A branch reference. A branch is nothing more than its name
+* and the ID of the commit at its head; the history behind the
+* head is reached through the parent IDs stored in each Commits.
+* Branch files live in .gitlet/refs and contain the commit ID as
+* text, and .gitlet/HEAD contains the name of the current branch.
 * @author Yuhan Dong
  */
-public class Tree implements Serializable {
+public class Tree {
 
-    /** The branch name.*/
-    private String branchName;
+    /** The directory holding one file per branch.*/
+    static final File REFS = new File(".gitlet/refs");
 
-    /** The parent tree.*/
-    private Tree parent;
+    /** The file naming the current branch.*/
+    static final File HEAD = new File(".gitlet/HEAD");
 
-    /** Save the different branches.
-     * String is the branch name and
-     * Tree is the object.*/
-    private HashMap<String, Tree> branches = new HashMap<>();
+    /** The branch name.*/
+    private String branchName;
 
     /** The commitID of the head of the tree.*/
     private String commitId;
 
-    /** The parent created by merge.*/
-    private Tree mergeParent;
-
     /** The initial tree is consists of the branch
      * name master. It does not have split. No files,
      * just to initialize and create directories.
@@ -35,95 +33,64 @@ public class Tree implements Serializable {
     Tree() {
         branchName = "master";
         commitId = new Commits().getCommitID();
-        parent = null;
-        mergeParent = null;
-        branches.put(branchName, this);
-        File trees = new File(".gitlet/tree/treeNode");
-        Utils.writeObject(trees, this);
-        File master = new File(".gitlet/tree/master");
-        Utils.writeObject(master, this);
+        save();
+        makeHead();
     }
 
-    /** Create a tree with all the information given
-     * in the parameters. Create this tree and save it
-     * to the directory.
+    /** A reference to the branch INPUTBRANCHNAME whose head
+     * is COMMITIDS. Nothing is written until save() is called.
      * @param inputbranchName The input branch name.
-     * @param parentTree the parent tree
      * @param commitIds the commit ID of the head commit.
      */
-    Tree(String inputbranchName, Tree parentTree,
-         String commitIds) {
+    Tree(String inputbranchName, String commitIds) {
         this.branchName = inputbranchName;
-        this.parent = parentTree;
-        mergeParent = null;
         this.commitId = commitIds;
-        if (this.parent != null) {
-            branches.putAll(parentTree.getBranches());
-        }
-        branches.put(inputbranchName, this);
-        File trees = new File(".gitlet/tree/treeNode");
-        Utils.writeObject(trees, this);
-        File branch = new File(".gitlet/tree/"
-                + inputbranchName);
-        Utils.writeObject(branch, this);
     }
 
-    /**The constructor for creating just one more branch.
-     * Does not switch the treeNode to itself.
-     * @param inputbranchName The input branchName
+    /** Return the branch the HEAD points to.*/
+    static Tree head() {
+        return branch(Utils.readContentsAsString(HEAD));
+    }
+
+    /** Return the branch called NAME, or null if there is
+     * no such branch.
+     * @param name the branch name.
      */
-    Tree(String inputbranchName) {
-        this.branchName = inputbranchName;
-        Tree treeNode = Utils.readObject(
-                new File(".gitlet/tree/treeNode"), Tree.class);
-        this.parent = treeNode.getParent();
-        mergeParent = null;
-        this.commitId = treeNode.getCommitId();
-        if (this.parent != null) {
-            branches.putAll(parent.getBranches());
+    static Tree branch(String name) {
+        File ref = new File(REFS, name);
+        if (!ref.isFile()) {
+            return null;
         }
-        branches.put(inputbranchName, this);
-        File branch = new File(".gitlet/tree/"
-                + inputbranchName);
-        Utils.writeObject(branch, this);
+        return new Tree(name, Utils.readContentsAsString(ref));
     }
 
-    /**The new constructor just for merge.
-     * Contains a mergeParent which is the
-     * given branch.
-     * @param treenode the current branch.
-     * @param given the given branch.
-     * @param mergecommitId the commit ID of newly commit created.
+    /** Return the names of all branches in lexicographic order.*/
+    static List<String> branchNames() {
+        List<String> names = Utils.plainFilenamesIn(REFS);
+        return names == null ? new ArrayList<>() : names;
+    }
+
+    /** Delete the branch called NAME. The commits of the
+     * branch are left untouched.
+     * @param name the branch name.
      */
-    Tree(Tree treenode, Tree given, String mergecommitId) {
-        this.mergeParent = given;
-        this.branchName = treenode.branchName;
-        this.parent = treenode;
-        this.commitId = mergecommitId;
-        if (this.parent != null) {
-            branches.putAll(treenode.getBranches());
-        }
-        branches.put(treenode.getBranchName(), this);
-        File trees = new File(".gitlet/tree/treeNode");
-        Utils.writeObject(trees, this);
-        File branch = new File(".gitlet/tree/"
-                + treenode.getBranchName());
-        Utils.writeObject(branch, this);
+    static void deleteBranch(String name) {
+        new File(REFS, name).delete();
     }
 
-    /** Return the branch name.*/
-    public String getBranchName() {
-        return branchName;
+    /** Write this branch reference to its file.*/
+    void save() {
+        Utils.writeContents(new File(REFS, branchName), commitId);
     }
 
-    /** Return the parent tree.*/
-    public Tree getParent() {
-        return parent;
+    /** Make this branch the current branch.*/
+    void makeHead() {
+        Utils.writeContents(HEAD, branchName);
     }
 
-    /** Return the branches.*/
-    public HashMap<String, Tree> getBranches() {
-        return branches;
+    /** Return the branch name.*/
+    public String getBranchName() {
+        return branchName;
     }
 
     /** Return the commit ID of the head.*/
@@ -131,21 +98,23 @@ public class Tree implements Serializable {
         return commitId;
     }
 
+    /** Move the head of this branch to COMMITIDS and save it.
+     * @param commitIds the commit ID of the new head commit.
+     */
+    public void setCommitId(String commitIds) {
+        this.commitId = commitIds;
+        save();
+    }
+
     /** Return the head commit.*/
     public Commits getCommit() {
-        return Utils.readObject(
-                new File(".gitlet/commits/" + getCommitId() + ".txt"),
-                Commits.class);
+        return Commits.read(getCommitId());
     }
 
-    /** Return the mergeParent. */
-    public Tree getMergeParent() {
-        return mergeParent;
-    }
-    /** Create a new branch and save it inside the hashmap.
+    /** Create a new branch pointing at the head of this one.
      * @param newbranchName the new branch name.*/
     public void createBranch(String newbranchName) {
-        new Tree(newbranchName);
+        new Tree(newbranchName, commitId).save();
     }
 
 }
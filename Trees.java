@@ -0,0 +1,286 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+* One directory of a commit: the files in it, each a name and a blob
+* ID, and its subdirectories, each a name and the ID of another tree.
+* Not to be confused with Tree, which is a branch reference.
+*
+* A tree is stored in a binary format: the magic GTRE, a version, the
+* files sorted by name and then the subdirectories sorted by name, each
+* list an int count followed by the names and 20-byte IDs. Strings are
+* an int length followed by UTF-8. The SHA-1 of the encoding is the
+* tree ID, so a directory that did not change between two commits is
+* the same tree in both, and a commit only writes the trees on the
+* paths it changed.
+* @author Yuhan Dong
+ */
+class Trees {
+
+    /** Magic number of an encoded tree.*/
+    private static final int MAGIC = 0x47545245;
+
+    /** Format version of an encoded tree.*/
+    private static final int VERSION = 1;
+
+    /** Bytes added to the estimated heap size of a tree read, which
+     * is otherwise taken as twice its encoded size.
+     */
+    private static final long OBJECT_OVERHEAD = 64;
+
+    /** The ID of the tree with no entries.*/
+    static final String EMPTY = Utils.sha1((Object) new Trees().encode());
+
+    /** The blob IDs of the files, by name.*/
+    private final TreeMap<String, String> files;
+
+    /** The tree IDs of the subdirectories, by name.*/
+    private final TreeMap<String, String> dirs;
+
+    /** A tree with no entries.*/
+    private Trees() {
+        files = new TreeMap<>();
+        dirs = new TreeMap<>();
+    }
+
+    /** A copy of OTHER, to be changed.
+     * @param other the tree to copy.
+     */
+    private Trees(Trees other) {
+        files = new TreeMap<>(other.files);
+        dirs = new TreeMap<>(other.dirs);
+    }
+
+    /** Decode the tree ID from BYTES.
+     * @param id the full tree ID.
+     * @param bytes the encoded tree.
+     */
+    private Trees(String id, byte[] bytes) throws IOException {
+        this();
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw Utils.error("Corrupt tree %s.", id);
+        } else if (in.readInt() != VERSION) {
+            throw Utils.error("Tree %s has an unknown format version.", id);
+        }
+        readEntries(in, files);
+        readEntries(in, dirs);
+    }
+
+    /** Return the tree saved under ID.
+     * @param id the full tree ID.
+     */
+    static Trees read(String id) {
+        Trees result = ObjectCache.shared().get(id, Trees.class);
+        if (result == null) {
+            if (id.equals(EMPTY)) {
+                return new Trees();
+            }
+            byte[] bytes = ObjectStore.readBytes(ObjectStore.TREES, id);
+            try {
+                result = new Trees(id, bytes);
+            } catch (IOException excp) {
+                throw Utils.error("Corrupt tree %s.", id);
+            }
+            ObjectCache.shared().put(id, result,
+                    OBJECT_OVERHEAD + 2L * bytes.length);
+        }
+        return result;
+    }
+
+    /** Return the ID of the tree ROOT after applying CHANGES, which
+     * map paths below it to a new blob ID, or to null for a removed
+     * file. Only the trees of the directories holding a changed path
+     * are read and written; every other subtree is kept by ID.
+     * Directories left with no entries are dropped.
+     * @param root the ID of the tree to start from.
+     * @param changes the new blob ID of each changed path.
+     */
+    static String update(String root, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        Trees tree = new Trees(read(root));
+        Map<String, Map<String, String>> below = new HashMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash),
+                    k -> new HashMap<>()).put(path.substring(slash + 1),
+                            change.getValue());
+            } else if (change.getValue() == null) {
+                tree.files.remove(path);
+            } else {
+                tree.files.put(path, change.getValue());
+                tree.dirs.remove(path);
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> dir : below.entrySet()) {
+            String name = dir.getKey();
+            String id = update(tree.dirs.getOrDefault(name, EMPTY),
+                    dir.getValue());
+            if (id.equals(EMPTY)) {
+                tree.dirs.remove(name);
+            } else {
+                tree.dirs.put(name, id);
+                tree.files.remove(name);
+            }
+        }
+        return tree.write();
+    }
+
+    /** Return the blob ID of the file at PATH below the tree ROOT,
+     * or null if there is none. Only the trees on the path are read.
+     * @param root the ID of the tree.
+     * @param path the path, with / between directories.
+     */
+    static String find(String root, String path) {
+        Trees tree = read(root);
+        int start = 0;
+        for (int slash = path.indexOf('/'); slash >= 0;
+             slash = path.indexOf('/', start)) {
+            String id = tree.dirs.get(path.substring(start, slash));
+            if (id == null) {
+                return null;
+            }
+            tree = read(id);
+            start = slash + 1;
+        }
+        return tree.files.get(path.substring(start));
+    }
+
+    /** Add the path and blob ID of every file below the tree ID to
+     * FILES, each path starting with PREFIX.
+     * @param id the ID of the tree.
+     * @param prefix the path of the tree followed by /, or empty.
+     * @param files where the files are added.
+     */
+    static void flatten(String id, String prefix, Manifest.Builder files) {
+        Trees tree = read(id);
+        for (Map.Entry<String, String> file : tree.files.entrySet()) {
+            files.add(prefix + file.getKey(), file.getValue());
+        }
+        for (Map.Entry<String, String> dir : tree.dirs.entrySet()) {
+            flatten(dir.getValue(), prefix + dir.getKey() + "/", files);
+        }
+    }
+
+    /** Add the ID of the tree ID and of every tree below it to TREES,
+     * and the IDs of their files to BLOBS. Trees already in TREES are
+     * not read again, so trees shared between commits are visited
+     * once.
+     * @param id the ID of the tree.
+     * @param trees the trees found so far.
+     * @param blobs the blobs found so far.
+     */
+    static void mark(String id, Set<String> trees, Set<String> blobs) {
+        if (!trees.add(id)) {
+            return;
+        }
+        Trees tree = read(id);
+        blobs.addAll(tree.files.values());
+        for (String dir : tree.dirs.values()) {
+            mark(dir, trees, blobs);
+        }
+    }
+
+    /** Call VISIT with the path and blob ID of every file of the tree
+     * ID and of the trees below it, skipping the trees already in
+     * TREES and adding the others, so that files in a subtree that
+     * did not change since it was last walked are not visited again.
+     * @param id the ID of the tree.
+     * @param prefix the path of the tree followed by /, or empty.
+     * @param trees the trees walked so far.
+     * @param visit called with each path and blob ID.
+     */
+    static void walk(String id, String prefix, Set<String> trees,
+                     BiConsumer<String, String> visit) {
+        if (!trees.add(id)) {
+            return;
+        }
+        Trees tree = read(id);
+        for (Map.Entry<String, String> file : tree.files.entrySet()) {
+            visit.accept(prefix + file.getKey(), file.getValue());
+        }
+        for (Map.Entry<String, String> dir : tree.dirs.entrySet()) {
+            walk(dir.getValue(), prefix + dir.getKey() + "/", trees, visit);
+        }
+    }
+
+    /** Save this tree, unless the store already has it, and return
+     * its ID.
+     */
+    private String write() {
+        byte[] bytes = encode();
+        String id = Utils.sha1((Object) bytes);
+        if (!ObjectStore.contains(ObjectStore.TREES, id)) {
+            ObjectStore.writeBytes(ObjectStore.TREES, id, bytes);
+        }
+        ObjectCache.shared().put(id, this,
+                OBJECT_OVERHEAD + 2L * bytes.length);
+        return id;
+    }
+
+    /** Return the encoding of this tree.*/
+    private byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + (files.size() + dirs.size()) * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeEntries(out, files);
+            writeEntries(out, dirs);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Write the count of ENTRIES and then each name and 20-byte ID
+     * to OUT.
+     * @param out the destination.
+     * @param entries IDs by name.
+     */
+    private static void writeEntries(DataOutputStream out,
+                                     TreeMap<String, String> entries)
+        throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            out.write(PackFile.fromHex(entry.getValue()));
+        }
+    }
+
+    /** Read the entries written by writeEntries from IN into ENTRIES.
+     * @param in the source.
+     * @param entries where the IDs are put by name.
+     */
+    private static void readEntries(DataInputStream in,
+                                    TreeMap<String, String> entries)
+        throws IOException {
+        int count = in.readInt();
+        byte[] id = new byte[PackFile.ID_BYTES];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[in.readInt()];
+            in.readFully(name);
+            in.readFully(id);
+            entries.put(new String(name, StandardCharsets.UTF_8),
+                    PackFile.toHex(id));
+        }
+    }
+}
@@ -3,6 +3,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -11,12 +12,17 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Formatter;
 import java.util.List;
 
@@ -31,6 +37,14 @@ class Utils {
     /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
     static final int UID_LENGTH = 40;
 
+    /** Size of the direct buffer used to hash files. */
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    /** One direct hashing buffer per thread. */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFER =
+        ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
+
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
@@ -39,22 +53,55 @@ class Utils {
             for (Object val : vals) {
                 if (val instanceof byte[]) {
                     md.update((byte[]) val);
+                    Trace.hashed(((byte[]) val).length);
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    byte[] bytes = ((String) val).getBytes(
+                            StandardCharsets.UTF_8);
+                    md.update(bytes);
+                    Trace.hashed(bytes.length);
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+            return toHex(md.digest());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, which is the same
+     *  as sha1(readContents(FILE)).  The file is read through a direct
+     *  buffer in fixed-size pieces, so it is never held in memory.
+     *  Throws IllegalArgumentException in case of problems. */
+    static String sha1(File file) {
+        try (FileChannel channel =
+                 FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = HASH_BUFFER.get();
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                Trace.hashed(buffer.remaining());
+                md.update(buffer);
+                buffer.clear();
             }
-            return result.toString();
+            return toHex(md.digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Returns DIGEST as a lower-case hexadecimal numeral. */
+    private static String toHex(byte[] digest) {
+        Formatter result = new Formatter();
+        for (byte b : digest) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
@@ -86,6 +133,18 @@ class Utils {
         return restrictedDelete(new File(file));
     }
 
+    /** Deletes FILE and, if it is a directory, everything below it.
+     *  Does nothing if FILE does not exist. */
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
     /* READING AND WRITING FILE CONTENTS */
 
     /** Return the entire contents of FILE as a byte array.  FILE must
@@ -96,7 +155,9 @@ class Utils {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] result = Files.readAllBytes(file.toPath());
+            Trace.fileRead(result.length);
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -121,19 +182,34 @@ class Utils {
             }
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            long size = 0;
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] bytes = obj instanceof byte[] ? (byte[]) obj
+                    : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(bytes);
+                size += bytes.length;
             }
             str.close();
+            Trace.fileWritten(size);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Return a new empty file next to FILE, to write its new content
+     *  into before it is moved in place. Its name is chosen so that no
+     *  other thread or process gets the same one, and ends in .tmp, so
+     *  gc deletes it if the write is interrupted.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static File temporary(File file) {
+        try {
+            return File.createTempFile(file.getName() + "-", ".tmp",
+                    file.getParentFile());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -143,6 +219,7 @@ class Utils {
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Trace.fileRead(file.length());
             return result;
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
@@ -186,6 +263,37 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Returns a list of the paths of all plain files in the directory
+     *  DIR and the directories below it, other than .gitlet, relative
+     *  to DIR and with / between directories, in lexicographic order as
+     *  Java Strings.  Returns an empty list if DIR does not denote a
+     *  directory. */
+    static List<String> plainFilenamesBelow(File dir) {
+        List<String> result = new ArrayList<>();
+        addPlainFilenames(dir, "", result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Add the paths of the plain files in DIR and below it to RESULT,
+     *  each starting with PREFIX. */
+    private static void addPlainFilenames(File dir, String prefix,
+                                          List<String> result) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isFile()) {
+                result.add(prefix + child.getName());
+            } else if (child.isDirectory()
+                       && !child.getName().equals(".gitlet")) {
+                addPlainFilenames(child, prefix + child.getName() + "/",
+                                  result);
+            }
+        }
+    }
+
     /* OTHER FILE UTILITIES */
 
     /** Return the concatentation of FIRST and OTHERS into a File designator,
@@ -218,6 +326,20 @@ class Utils {
         }
     }
 
+    /** Return an object of type T read from the serialized BYTES,
+     *  casting it to EXPECTEDCLASS.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -0,0 +1,869 @@
+package gitlet;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+* Benchmarks of the core object and graph operations. Each benchmark
+* is warmed up and then run for a number of timed iterations; the
+* score is the mean time per operation over the iterations. Results
+* are printed as CSV, one line per benchmark and parameter set, so the
+* results of two revisions can be compared with the compare command.
+*
+* The repository benchmarks build their repositories in the current
+* directory, which must be empty, and delete them afterwards.
+*
+* Usage: java gitlet.Benchmark [--filter REGEX] [--warmup MS]
+*        [--time MS] [--iterations N]
+*        java gitlet.Benchmark compare OLD.csv NEW.csv
+* @author Yuhan Dong
+ */
+public class Benchmark {
+
+    /** The header of the CSV output.*/
+    static final String HEADER =
+        "benchmark,params,unit,iterations,score,stdev";
+
+    /** An operation to be timed.*/
+    interface Op {
+        /** Run the operation once and return any result, so the
+         * work is not optimized away. */
+        Object run() throws Exception;
+    }
+
+    /** Results of operations, read so they are not optimized away.*/
+    private static volatile Object sink;
+
+    /** Only benchmarks whose name matches this are run.*/
+    private Pattern filter = Pattern.compile(".*");
+
+    /** Warmup time in milliseconds.*/
+    private long warmup = 1000;
+
+    /** Time of one measured iteration in milliseconds.*/
+    private long time = 1000;
+
+    /** Number of measured iterations.*/
+    private int iterations = 5;
+
+    /** Where results are printed.*/
+    private final PrintStream out = System.out;
+
+    /** Usage: java gitlet.Benchmark ARGS, see the class comment.*/
+    public static void main(String... args) throws Exception {
+        if (args.length == 3 && args[0].equals("compare")) {
+            compare(new File(args[1]), new File(args[2]));
+            return;
+        }
+        Benchmark bench = new Benchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+            case "--filter":
+                bench.filter = Pattern.compile(args[i + 1]);
+                break;
+            case "--warmup":
+                bench.warmup = Long.parseLong(args[i + 1]);
+                break;
+            case "--time":
+                bench.time = Long.parseLong(args[i + 1]);
+                break;
+            case "--iterations":
+                bench.iterations = Integer.parseInt(args[i + 1]);
+                break;
+            default:
+                System.err.println("Unknown option " + args[i]);
+                return;
+            }
+        }
+        if (new File(".").list().length != 0) {
+            System.err.println("Run the benchmarks in an empty directory.");
+            return;
+        }
+        bench.out.println(HEADER);
+        bench.sha1();
+        bench.codec();
+        bench.commit();
+        bench.add();
+        bench.chunking();
+        bench.delta();
+        bench.manifest();
+        bench.splitPoint();
+        bench.readUID();
+        bench.workingTree();
+        bench.statusScaling();
+        bench.walk();
+    }
+
+    /** Time OP as the benchmark NAME with PARAMS and print the
+     * result.
+     * @param name the benchmark name.
+     * @param params the parameters, as name=value pairs.
+     * @param op the operation.
+     */
+    private void measure(String name, String params, Op op) throws Exception {
+        long end = System.nanoTime() + warmup * 1_000_000;
+        do {
+            sink = op.run();
+        } while (System.nanoTime() < end);
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long now = start;
+            end = start + time * 1_000_000;
+            while (now < end || ops == 0) {
+                sink = op.run();
+                ops += 1;
+                now = System.nanoTime();
+            }
+            scores[i] = (double) (now - start) / ops;
+        }
+        report(name, params, "ns/op", scores);
+    }
+
+    /** Time OP as the benchmark NAME with PARAMS, running RESET
+     * untimed before every run, and print the result. For
+     * operations too slow or too stateful to repeat back to back.
+     * @param name the benchmark name.
+     * @param params the parameters, as name=value pairs.
+     * @param reset restores the state OP starts from.
+     * @param op the operation.
+     */
+    private void measureEach(String name, String params, Op reset, Op op)
+        throws Exception {
+        long end = System.nanoTime() + warmup * 1_000_000;
+        do {
+            reset.run();
+            sink = op.run();
+        } while (System.nanoTime() < end);
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            reset.run();
+            long start = System.nanoTime();
+            sink = op.run();
+            scores[i] = System.nanoTime() - start;
+        }
+        report(name, params, "ns/op", scores);
+    }
+
+    /** Measure the heap retained by the result of OP as the benchmark
+     * NAME with PARAMS and print the result. The heap in use is read
+     * from the runtime after collecting garbage, before and after OP
+     * runs, so the result must not share objects that existed before.
+     * @param name the benchmark name.
+     * @param params the parameters, as name=value pairs.
+     * @param op the operation building the object measured.
+     */
+    private void footprint(String name, String params, Op op)
+        throws Exception {
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            sink = null;
+            long before = usedHeap();
+            sink = op.run();
+            scores[i] = usedHeap() - before;
+        }
+        sink = null;
+        report(name, params, "bytes", scores);
+    }
+
+    /** Return the bytes of heap in use after collecting garbage.*/
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Print the mean and standard deviation of SCORES, in UNIT, as
+     * the result of the benchmark NAME with PARAMS.
+     * @param name the benchmark name.
+     * @param params the parameters, as name=value pairs.
+     * @param unit the unit of the scores.
+     * @param scores the score of each iteration.
+     */
+    private void report(String name, String params, String unit,
+                        double[] scores) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / iterations;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double stdev = iterations > 1
+                ? Math.sqrt(variance / (iterations - 1)) : 0;
+        out.printf("%s,%s,%s,%d,%.1f,%.1f%n", name, params, unit, iterations,
+                mean, stdev);
+        out.flush();
+    }
+
+    /** Return true if the benchmark NAME is selected.
+     * @param name the benchmark name.
+     */
+    private boolean selected(String name) {
+        return filter.matcher(name).find();
+    }
+
+    /** Utils.sha1 of byte arrays and of files of several sizes.*/
+    private void sha1() throws Exception {
+        for (int size : new int[] {1 << 10, 1 << 16, 1 << 20, 1 << 24}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            if (selected("sha1.bytes")) {
+                measure("sha1.bytes", "size=" + size,
+                    () -> Utils.sha1((Object) data));
+            }
+            if (selected("sha1.file")) {
+                File file = new File("sha1-" + size);
+                Utils.writeContents(file, data);
+                measure("sha1.file", "size=" + size, () -> Utils.sha1(file));
+                file.delete();
+            }
+        }
+    }
+
+    /** Encoding and decoding of commits with many files, in the
+     * binary format and as serialized objects.
+     */
+    private void codec() throws Exception {
+        if (!selected("codec.")) {
+            return;
+        }
+        Main.init();
+        for (int files : new int[] {10, 1000, 100000}) {
+            HashMap<String, String> blobs = new HashMap<>();
+            for (int i = 0; i < files; i++) {
+                blobs.put("dir/file" + i + ".txt", Utils.sha1("blob " + i));
+            }
+            Commits commit = new Commits("codec " + files,
+                    Tree.head().getCommitId(), null, blobs);
+            String params = "files=" + files;
+            byte[] encoded = commit.encode();
+            byte[] serialized = Utils.serialize(commit);
+            if (selected("codec.encode")) {
+                measure("codec.encode", params, commit::encode);
+            }
+            if (selected("codec.decode")) {
+                measure("codec.decode", params,
+                    () -> Commits.decode(commit.getCommitID(), encoded));
+            }
+            if (selected("codec.serialize")) {
+                measure("codec.serialize", params,
+                    () -> Utils.serialize(commit));
+            }
+            if (selected("codec.deserialize")) {
+                measure("codec.deserialize", params,
+                    () -> Utils.deserialize(serialized, Commits.class));
+            }
+        }
+        wipe();
+    }
+
+    /** A commit changing one file on top of a commit of many files,
+     * a hundred to a directory.
+     */
+    private void commit() throws Exception {
+        if (!selected("commit")) {
+            return;
+        }
+        for (int files : new int[] {1000, 100000}) {
+            Main.init();
+            HashMap<String, String> blobs = new HashMap<>();
+            for (int i = 0; i < files; i++) {
+                blobs.put("dir" + i / 100 + "/file" + i + ".txt",
+                        Utils.sha1("blob " + i));
+            }
+            String base = new Commits("files", Tree.head().getCommitId(),
+                    null, blobs).getCommitID();
+            int[] count = {0};
+            measure("commit", "files=" + files, () -> new Commits("one",
+                    base, null, Map.of("dir0/file0.txt",
+                            Utils.sha1("change " + count[0]++))));
+            wipe();
+        }
+    }
+
+    /** Main.add of a working tree of many small files, a hundred to
+     * a directory, in one batch: cold, with no index and no blobs
+     * stored, and again once every file is staged.
+     */
+    private void add() throws Exception {
+        if (!selected("add")) {
+            return;
+        }
+        int files = 10000;
+        Main.init();
+        Random random = new Random(files);
+        for (int i = 0; i < files; i++) {
+            byte[] data = new byte[1024];
+            random.nextBytes(data);
+            File file = new File("dir" + i / 100 + "/file" + i + ".txt");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, data);
+        }
+        String[] args = {"add", "."};
+        String params = "files=" + files;
+        if (selected("add.cold")) {
+            measureEach("add.cold", params, () -> {
+                Index.FILE.delete();
+                Staging.FILE.delete();
+                Utils.deleteRecursively(
+                        new File(".gitlet/" + ObjectStore.BLOBS));
+                Index.reset();
+                ObjectStore.reset();
+                return null;
+            }, () -> {
+                Main.add(args);
+                return null;
+            });
+        }
+        if (selected("add.staged")) {
+            Main.add(args);
+            measure("add.staged", params, () -> {
+                Main.add(args);
+                return null;
+            });
+        }
+        wipe();
+    }
+
+    /** Storing a large file as chunks: the throughput of storing a
+     * new file, and for several edits the ratio of the size of two
+     * versions of a file to the bytes the store takes for both. Each
+     * iteration uses new random content, which does not compress, so
+     * a ratio near 2 means the versions share nearly every chunk.
+     */
+    private void chunking() throws Exception {
+        if (!selected("chunk.")) {
+            return;
+        }
+        int size = 16 << 20;
+        String params = "size=" + size;
+        File file = new File("data");
+        Main.init();
+        if (selected("chunk.ingest")) {
+            double[] scores = new double[iterations];
+            for (int i = -1; i < iterations; i++) {
+                byte[] data = new byte[size];
+                new Random(i).nextBytes(data);
+                Utils.writeContents(file, data);
+                clearObjects();
+                long start = System.nanoTime();
+                Blobs.store(file);
+                if (i >= 0) {
+                    scores[i] = size / 1e6 / ((System.nanoTime() - start)
+                            / 1e9);
+                }
+            }
+            report("chunk.ingest", params, "MB/s", scores);
+        }
+        for (String edit : new String[] {"insert", "overwrite", "append"}) {
+            if (!selected("chunk.dedup." + edit)) {
+                continue;
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                Random random = new Random(i);
+                byte[] data = new byte[size];
+                random.nextBytes(data);
+                byte[] edited = edit(edit, data, random);
+                clearObjects();
+                Utils.writeContents(file, data);
+                Blobs.store(file);
+                Utils.writeContents(file, edited);
+                Blobs.store(file);
+                scores[i] = (double) (data.length + edited.length)
+                    / (diskSize(new File(".gitlet/" + ObjectStore.BLOBS))
+                    + diskSize(new File(".gitlet/" + ObjectStore.CHUNKS)));
+            }
+            report("chunk.dedup." + edit, params, "ratio", scores);
+        }
+        wipe();
+    }
+
+    /** A history of a text file of a mebibyte, each revision changing
+     * three short runs of the one before, committed one revision at a
+     * time and repacked every REPACK commits as gc would: the ratio of
+     * the bytes the revisions take as loose blobs to the bytes of the
+     * pack, the size of the pack, and the time to read a revision
+     * newest first as log -p would, at random as checkout would, and
+     * as a loose blob for comparison.
+     */
+    private void delta() throws Exception {
+        if (!selected("delta.")) {
+            return;
+        }
+        int revisions = 10000;
+        int size = 1 << 20;
+        int repack = 500;
+        String params = "revisions=" + revisions + ";size=" + size;
+        Main.init();
+        Random random = new Random(revisions);
+        String[] words = {"delta ", "chain ", "base ", "copy ", "insert ",
+            "pack ", "blob ", "tree ", "commit ", "the ", "of ", "and\n"};
+        byte[] data = new byte[size];
+        int filled = 0;
+        while (filled < size) {
+            byte[] word = words[random.nextInt(words.length)].getBytes();
+            int n = Math.min(word.length, size - filled);
+            System.arraycopy(word, 0, data, filled, n);
+            filled += n;
+        }
+        File file = new File("data.txt");
+        String[] ids = new String[revisions];
+        String parent = Tree.head().getCommitId();
+        long loose = 0;
+        for (int r = 0; r < revisions; r++) {
+            for (int k = 0; k < 3; k++) {
+                int at = random.nextInt(size - 32);
+                for (int j = 0; j < 32; j++) {
+                    data[at + j] = (byte) ('a' + random.nextInt(26));
+                }
+            }
+            Utils.writeContents(file, data);
+            ids[r] = Blobs.store(file);
+            HashMap<String, String> changes = new HashMap<>();
+            changes.put(file.getName(), ids[r]);
+            parent = new Commits("revision " + r, parent, null, changes)
+                .getCommitID();
+            if ((r + 1) % repack == 0 || r + 1 == revisions) {
+                loose += diskSize(new File(".gitlet/" + ObjectStore.BLOBS));
+                Tree.head().setCommitId(parent);
+                ObjectStore.repack();
+            }
+        }
+        long packed = 0;
+        for (File pack : ObjectStore.PACKS.listFiles()) {
+            if (pack.getName().startsWith(ObjectStore.BLOBS + "-")) {
+                packed += pack.length();
+            }
+        }
+        double[] ratio = new double[iterations];
+        Arrays.fill(ratio, (double) loose / packed);
+        report("delta.storage", params, "ratio", ratio);
+        double[] bytes = new double[iterations];
+        Arrays.fill(bytes, packed);
+        report("delta.pack", params, "bytes", bytes);
+        OutputStream none = OutputStream.nullOutputStream();
+        int[] next = {revisions - 1};
+        measure("delta.read", params + ";read=history", () -> {
+            try (InputStream in = Blobs.open(ids[next[0]])) {
+                next[0] = next[0] == 0 ? revisions - 1 : next[0] - 1;
+                return in.transferTo(none);
+            }
+        });
+        Random pick = new Random(0);
+        measure("delta.read", params + ";read=random", () -> {
+            try (InputStream in = Blobs.open(ids[pick.nextInt(revisions)])) {
+                return in.transferTo(none);
+            }
+        });
+        data[0] = '!';
+        Utils.writeContents(file, data);
+        String whole = Blobs.store(file);
+        measure("delta.read", params + ";read=loose", () -> {
+            try (InputStream in = Blobs.open(whole)) {
+                return in.transferTo(none);
+            }
+        });
+        wipe();
+    }
+
+    /** Return DATA after the edit KIND at places chosen by RANDOM:
+     * insert puts 100 bytes in the middle, overwrite changes 1 KiB
+     * at each of ten places, and append adds 1 MiB at the end.
+     * @param kind insert, overwrite or append.
+     * @param data the original content.
+     * @param random the source of the places and the new bytes.
+     */
+    private static byte[] edit(String kind, byte[] data, Random random) {
+        byte[] added = new byte[kind.equals("append") ? 1 << 20 : 100];
+        random.nextBytes(added);
+        switch (kind) {
+        case "insert":
+            int at = data.length / 2;
+            byte[] result = new byte[data.length + added.length];
+            System.arraycopy(data, 0, result, 0, at);
+            System.arraycopy(added, 0, result, at, added.length);
+            System.arraycopy(data, at, result, at + added.length,
+                    data.length - at);
+            return result;
+        case "overwrite":
+            result = data.clone();
+            for (int i = 0; i < 10; i++) {
+                byte[] patch = new byte[1024];
+                random.nextBytes(patch);
+                System.arraycopy(patch, 0, result,
+                        random.nextInt(data.length - patch.length),
+                        patch.length);
+            }
+            return result;
+        default:
+            result = Arrays.copyOf(data, data.length + added.length);
+            System.arraycopy(added, 0, result, data.length, added.length);
+            return result;
+        }
+    }
+
+    /** Delete the blobs and chunks of the repository.*/
+    private static void clearObjects() {
+        Utils.deleteRecursively(new File(".gitlet/" + ObjectStore.BLOBS));
+        Utils.deleteRecursively(new File(".gitlet/" + ObjectStore.CHUNKS));
+        ObjectStore.reset();
+    }
+
+    /** Return the total size of the files below FILE.
+     * @param file a file or directory.
+     */
+    private static long diskSize(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long result = 0;
+        for (File child : children) {
+            result += diskSize(child);
+        }
+        return result;
+    }
+
+    /** The heap taken by the files of a commit as a Manifest and as
+     * a HashMap of hex IDs by path, and lookups in both.
+     */
+    private void manifest() throws Exception {
+        for (int files : new int[] {1000, 100000}) {
+            String params = "files=" + files;
+            if (selected("manifest.heap")) {
+                footprint("manifest.heap", params,
+                    () -> Manifest.of(files(files)));
+            }
+            if (selected("hashmap.heap")) {
+                footprint("hashmap.heap", params, () -> files(files));
+            }
+            HashMap<String, String> map = files(files);
+            Manifest manifest = Manifest.of(map);
+            String[] paths = map.keySet().toArray(new String[0]);
+            int[] next = {0};
+            if (selected("manifest.get")) {
+                measure("manifest.get", params, () -> manifest.get(
+                        paths[next[0]++ % paths.length]));
+            }
+            if (selected("hashmap.get")) {
+                measure("hashmap.get", params, () -> map.get(
+                        paths[next[0]++ % paths.length]));
+            }
+        }
+    }
+
+    /** Return a new map of COUNT made-up files, a hundred to a
+     * directory, to their blob IDs.
+     * @param count the number of files.
+     */
+    private static HashMap<String, String> files(int count) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            result.put("src/dir" + i / 100 + "/file" + i + ".java",
+                    Utils.sha1("blob " + i));
+        }
+        return result;
+    }
+
+    /** Main.findSplitPoint on a linear history and on two branches
+     * that are merged into each other every few commits.
+     */
+    private void splitPoint() throws Exception {
+        for (int depth : new int[] {100, 1000, 10000}) {
+            if (selected("splitPoint.linear")) {
+                Main.init();
+                Tree master = Tree.head();
+                String fork = chain(master.getCommitId(), "linear", depth / 2);
+                Tree other = new Tree("other", chain(fork, "other", 1));
+                other.save();
+                master.setCommitId(chain(fork, "master", depth / 2));
+                measure("splitPoint.linear", "depth=" + depth,
+                    () -> Main.findSplitPoint(master, other));
+                wipe();
+            }
+            if (selected("splitPoint.merges")) {
+                Main.init();
+                String a = Tree.head().getCommitId();
+                String b = a;
+                for (int i = 0; i < depth / 2; i++) {
+                    a = chain(a, "a" + i, 1);
+                    b = chain(b, "b" + i, 1);
+                    if (i % 10 == 9) {
+                        String merged = merge(a, b);
+                        b = merge(b, a);
+                        a = merged;
+                    }
+                }
+                Tree left = Tree.head();
+                left.setCommitId(a);
+                Tree right = new Tree("right", b);
+                right.save();
+                measure("splitPoint.merges", "depth=" + depth,
+                    () -> Main.findSplitPoint(left, right));
+                wipe();
+            }
+        }
+    }
+
+    /** Main.readUID with short, medium and full IDs.*/
+    private void readUID() throws Exception {
+        if (!selected("readUID")) {
+            return;
+        }
+        for (int commits : new int[] {1000, 10000}) {
+            Main.init();
+            String id = chain(Tree.head().getCommitId(), "uid", commits);
+            for (int length : new int[] {6, 12, Utils.UID_LENGTH}) {
+                String prefix = id.substring(0, length);
+                measure("readUID", "commits=" + commits + ";length=" + length,
+                    () -> Main.readUID(prefix));
+            }
+            wipe();
+        }
+    }
+
+    /** Main.checkoutFiles between two commits of many small files
+     * that differ in three, and Main.status over their working tree.
+     */
+    private void workingTree() throws Exception {
+        if (!selected("checkoutFiles") && !selected("status")) {
+            return;
+        }
+        PrintStream stdout = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        for (int files : new int[] {100, 1000, 10000}) {
+            Commits commit = smallFiles(files);
+            if (selected("checkoutFiles")) {
+                HashMap<String, String> changes = new HashMap<>();
+                for (int i = 0; i < 3; i++) {
+                    File file = new File("changed" + i);
+                    Utils.writeContents(file, "changed " + i);
+                    changes.put("file" + i + ".txt", Blobs.store(file));
+                    file.delete();
+                }
+                Commits other = new Commits("three", commit.getCommitID(),
+                        null, changes);
+                Commits[] at = {commit, other};
+                measure("checkoutFiles", "files=" + files + ";changed=3",
+                    () -> {
+                        Main.checkoutFiles(at[1].getBlob(), at[0]);
+                        Commits from = at[0];
+                        at[0] = at[1];
+                        at[1] = from;
+                        return from;
+                    });
+                if (at[0] != commit) {
+                    Main.checkoutFiles(commit.getBlob(), at[0]);
+                }
+            }
+            if (selected("status")) {
+                System.setOut(quiet);
+                try {
+                    measure("status", "files=" + files, () -> {
+                        Main.status();
+                        return null;
+                    });
+                } finally {
+                    System.setOut(stdout);
+                }
+            }
+            wipe();
+        }
+    }
+
+    /** Main.status over working trees of 1k, 10k and 100k small
+     * files, with the working files hashed on fork-join pools of 1, 2
+     * and 4 threads and of one thread per processor. The parallel
+     * streams of status run in the pool of the task that starts them,
+     * so each pool stands for a machine with that many cores. Each
+     * tree is timed with the stat index filled in, when only the
+     * file sizes and times are read, and with the index deleted
+     * before every run, when every file is hashed.
+     */
+    private void statusScaling() throws Exception {
+        if (!selected("status.parallel")) {
+            return;
+        }
+        int[] threads = IntStream.of(1, 2, 4,
+                Runtime.getRuntime().availableProcessors())
+            .distinct().sorted().toArray();
+        PrintStream stdout = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        for (int files : new int[] {1000, 10000, 100000}) {
+            smallFiles(files);
+            System.setOut(quiet);
+            try {
+                for (int parallelism : threads) {
+                    ForkJoinPool pool = new ForkJoinPool(parallelism);
+                    Op status = () -> pool.submit(() -> {
+                        Main.status();
+                        return null;
+                    }).get();
+                    String params = "files=" + files + ";parallelism="
+                        + parallelism;
+                    try {
+                        if (selected("status.parallel.warm")) {
+                            measure("status.parallel.warm", params, status);
+                        }
+                        if (selected("status.parallel.cold")) {
+                            measureEach("status.parallel.cold", params,
+                                () -> {
+                                    Index.FILE.delete();
+                                    Index.reset();
+                                    return null;
+                                }, status);
+                        }
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+            } finally {
+                System.setOut(stdout);
+            }
+            wipe();
+        }
+    }
+
+    /** Start a repository whose head commit has FILES files of 1 KB
+     * of random bytes, all in the working directory, and return that
+     * commit.
+     * @param files the number of files.
+     */
+    private static Commits smallFiles(int files) {
+        Main.init();
+        Random random = new Random(files);
+        HashMap<String, String> blobs = new HashMap<>();
+        for (int i = 0; i < files; i++) {
+            byte[] data = new byte[1024];
+            random.nextBytes(data);
+            File file = new File("file" + i + ".txt");
+            Utils.writeContents(file, data);
+            blobs.put(file.getName(), Blobs.store(file));
+        }
+        Tree head = Tree.head();
+        Commits commit = new Commits("files", head.getCommitId(), null,
+                blobs);
+        head.setCommitId(commit.getCommitID());
+        return commit;
+    }
+
+    /** Listing the working files of a tree of a thousand files next
+     * to a build directory of twenty thousand, with every file and
+     * with the build directory ignored.
+     */
+    private void walk() throws Exception {
+        if (!selected("walk.")) {
+            return;
+        }
+        int files = 1000;
+        int ignored = 20000;
+        for (int i = 0; i < files + ignored; i++) {
+            File file = i < files
+                ? new File("src/dir" + i / 100 + "/file" + i + ".java")
+                : new File("target/dir" + i / 100 + "/file" + i + ".class");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, "file " + i);
+        }
+        String params = "files=" + files + ";ignored=" + ignored;
+        if (selected("walk.all")) {
+            measure("walk.all", params,
+                () -> Utils.plainFilenamesBelow(new File(".")));
+        }
+        if (selected("walk.ignore")) {
+            Utils.writeContents(Ignore.FILE, "target/\n*.log\n");
+            measure("walk.ignore", params, () -> Ignore.load().files(""));
+        }
+        wipe();
+    }
+
+    /** Write COUNT commits, each the child of the one before, starting
+     * from PARENT, and return the ID of the last one.
+     * @param parent the first parent.
+     * @param name the prefix of the messages.
+     * @param count the number of commits.
+     */
+    private static String chain(String parent, String name, int count) {
+        for (int i = 0; i < count; i++) {
+            parent = new Commits(name + " " + i, parent, null,
+                    new HashMap<>()).getCommitID();
+        }
+        return parent;
+    }
+
+    /** Write a merge commit of PARENT and MERGEPARENT and return
+     * its ID.
+     * @param parent the first parent.
+     * @param mergeParent the merged-in parent.
+     */
+    private static String merge(String parent, String mergeParent) {
+        return new Commits("Merged " + mergeParent + " into " + parent + ".",
+                parent, mergeParent, new HashMap<>()).getCommitID();
+    }
+
+    /** Delete everything in the current directory and forget the
+     * state of the repository kept in this process.
+     */
+    private static void wipe() {
+        for (File file : new File(".").listFiles()) {
+            Utils.deleteRecursively(file);
+        }
+        Index.reset();
+        ObjectStore.reset();
+    }
+
+
+    /** Print the ratio of the scores in NEWER to those in OLDER for
+     * every benchmark found in both.
+     * @param older the results of the old revision.
+     * @param newer the results of the new revision.
+     */
+    private static void compare(File older, File newer) throws IOException {
+        Map<String, Double> before = scores(older);
+        Map<String, Double> after = scores(newer);
+        System.out.println("benchmark,params,old,new,ratio");
+        for (Map.Entry<String, Double> entry : after.entrySet()) {
+            Double old = before.get(entry.getKey());
+            if (old != null) {
+                System.out.printf("%s,%.1f,%.1f,%.3f%n", entry.getKey(), old,
+                        entry.getValue(), entry.getValue() / old);
+            }
+        }
+    }
+
+    /** Return the scores in the results FILE by benchmark and
+     * parameters.
+     * @param file a file written by this class.
+     */
+    private static Map<String, Double> scores(File file) throws IOException {
+        Map<String, Double> result = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath())) {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                String[] fields = line.split(",");
+                if (fields.length == 6 && !line.equals(HEADER)) {
+                    result.put(fields[0] + "," + fields[1],
+                            Double.parseDouble(fields[4]));
+                }
+            }
+        }
+        return result;
+    }
+}
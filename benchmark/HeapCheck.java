@@ -0,0 +1,104 @@
+package gitlet;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+* Checks that add and commit store a file larger than the heap. In
+* the current directory, which must be empty, it writes a file of
+* random bytes MARGIN bytes larger than the maximum heap, or of the
+* size given with --size in MB, then runs init, add and commit on it
+* in this process. The file is then deleted and checked out again,
+* and its hash must match the blob ID of the commit. Anything that
+* loads the whole file into the heap runs out of memory and fails
+* the check. Run it with a small heap:
+*
+*     mkdir run && cd run && java -Xmx64m -cp ../out gitlet.HeapCheck
+*
+* It prints OK and exits with 0 if the check passes, and prints FAIL
+* and exits with 1 otherwise.
+* @author Yuhan Dong
+ */
+public class HeapCheck {
+
+    /** How many bytes larger than the heap the file is by default.*/
+    private static final long MARGIN = 64L << 20;
+
+    /** The name of the large file.*/
+    private static final String NAME = "large.bin";
+
+    /** Usage: java gitlet.HeapCheck [--size MB], see the class
+     * comment.
+     */
+    public static void main(String... args) throws IOException {
+        long heap = Runtime.getRuntime().maxMemory();
+        long size = heap + MARGIN;
+        if (args.length == 2 && args[0].equals("--size")) {
+            size = Long.parseLong(args[1]) << 20;
+        } else if (args.length != 0) {
+            System.err.println("Usage: java gitlet.HeapCheck [--size MB]");
+            System.exit(1);
+        }
+        if (new File(".").list().length != 0) {
+            System.err.println("Run the check in an empty directory.");
+            System.exit(1);
+        }
+        File file = new File(NAME);
+        write(file, size);
+        String expected = Utils.sha1(file);
+        String error;
+        try {
+            error = check(file, expected);
+        } catch (OutOfMemoryError excp) {
+            error = "ran out of heap: " + excp.getMessage();
+        }
+        if (error != null) {
+            System.out.printf("FAIL %s with a heap of %d MB: %s%n", NAME,
+                    heap >> 20, error);
+            System.exit(1);
+        }
+        System.out.printf("OK %d MB file added, committed and checked out"
+                + " with a heap of %d MB%n", size >> 20, heap >> 20);
+    }
+
+    /** Add and commit FILE, whose content has the SHA-1 EXPECTED,
+     * check it out again and return what went wrong, or null if
+     * nothing did.
+     * @param file the large file.
+     * @param expected its blob ID.
+     */
+    private static String check(File file, String expected) {
+        Main.main("init");
+        Main.main("add", NAME);
+        Main.main("commit", "large file");
+        String id = Tree.head().getCommit().getBlob().get(NAME);
+        if (!expected.equals(id)) {
+            return "the commit has blob " + id + ", not " + expected;
+        }
+        file.delete();
+        Main.main("checkout", "--", NAME);
+        if (!file.exists() || !expected.equals(Utils.sha1(file))) {
+            return "the checked-out file differs from the one added";
+        }
+        return null;
+    }
+
+    /** Write SIZE random bytes to FILE, a megabyte at a time.
+     * @param file the file to write.
+     * @param size its length in bytes.
+     */
+    private static void write(File file, long size) throws IOException {
+        Random random = new Random(size);
+        byte[] block = new byte[1 << 20];
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(file.toPath()))) {
+            for (long left = size; left > 0; left -= block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, (int) Math.min(left, block.length));
+            }
+        }
+    }
+}
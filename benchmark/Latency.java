@@ -0,0 +1,257 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Measures the latency of add, commit, status, checkout, log, merge
+* and reset as the history of a synthetic repository grows. The
+* repository is built in the current directory, which must be empty,
+* by RepoGenerator with the same options. At each checkpoint every
+* command is run SAMPLES times and its 50th and 99th percentile
+* latencies are printed as CSV. The report at the end fits each
+* command's median latency to a power of the number of commits and
+* marks the commands whose exponent is above 1.1 as super-linear.
+*
+* Commands run in this process after WARMUP rounds of every command,
+* so JVM startup and warmup are not counted. With --fork every command
+* runs in a new JVM instead, the way a user runs it.
+*
+* Usage: java gitlet.Latency [--checkpoints 100,200,400,800]
+*        [--samples S] [--warmup W] [--fork] [RepoGenerator options]
+* @author Yuhan Dong
+ */
+public class Latency {
+
+    /** Exponent above which a command is reported as super-linear.*/
+    private static final double SUPER_LINEAR = 1.1;
+
+    /** The commands measured, in report order.*/
+    private static final String[] COMMANDS = {
+        "add", "commit", "status", "checkout", "log", "merge", "reset",
+    };
+
+    /** The generator growing the repository.*/
+    private final RepoGenerator generator = new RepoGenerator();
+
+    /** Number of samples of each command per checkpoint.*/
+    private int samples = 20;
+
+    /** Number of rounds of every command run before measuring,
+     * to warm up the JVM.
+     */
+    private int warmup = 5;
+
+    /** True if each command runs in a new JVM.*/
+    private boolean fork;
+
+    /** Median latency in microseconds of each command, by command
+     * and then by number of commits.
+     */
+    private final Map<String, Map<Integer, Double>> medians =
+        new LinkedHashMap<>();
+
+    /** Number of merge branches made so far.*/
+    private int merges;
+
+    /** Usage: java gitlet.Latency ARGS, see the class comment.*/
+    public static void main(String... args) throws Exception {
+        Latency latency = new Latency();
+        int[] checkpoints = {100, 200, 400, 800};
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--fork")) {
+                latency.fork = true;
+            } else if (i + 1 == args.length) {
+                System.err.println("Missing value for " + args[i]);
+                return;
+            } else if (args[i].equals("--checkpoints")) {
+                checkpoints = Arrays.stream(args[++i].split(","))
+                        .mapToInt(Integer::parseInt).sorted().toArray();
+            } else if (args[i].equals("--samples")) {
+                latency.samples = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--warmup")) {
+                latency.warmup = Integer.parseInt(args[++i]);
+            } else if (!latency.generator.option(args[i], args[++i])) {
+                System.err.println("Unknown option " + args[i - 1]);
+                return;
+            }
+        }
+        if (new File(".").list().length != 0) {
+            System.err.println("Run the benchmark in an empty directory.");
+            return;
+        }
+        System.out.println("command,commits,samples,p50_us,p99_us");
+        latency.generator.init();
+        latency.warmUp(checkpoints[0]);
+        for (int checkpoint : checkpoints) {
+            latency.generator.grow(checkpoint);
+            latency.checkpoint(latency.generator.commits());
+        }
+        latency.report();
+    }
+
+    /** Measure every command on the repository as it is, with
+     * COMMITS commits.
+     * @param commits the size of the history.
+     */
+    private void checkpoint(int commits) throws Exception {
+        Map<String, List<Long>> times = new LinkedHashMap<>();
+        for (String command : COMMANDS) {
+            times.put(command, new ArrayList<>());
+        }
+        for (int i = 0; i < samples; i++) {
+            sample(times);
+        }
+        for (Map.Entry<String, List<Long>> entry : times.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(t -> t)
+                    .sorted().toArray();
+            if (sorted.length == 0) {
+                continue;
+            }
+            double p50 = percentile(sorted, 0.5) / 1e3;
+            double p99 = percentile(sorted, 0.99) / 1e3;
+            System.out.printf("%s,%d,%d,%.1f,%.1f%n", entry.getKey(), commits,
+                    sorted.length, p50, p99);
+            medians.computeIfAbsent(entry.getKey(),
+                k -> new LinkedHashMap<>()).put(commits, p50);
+        }
+        System.out.flush();
+    }
+
+    /** Grow the history to at most FIRST commits and run every
+     * command the number of warmup rounds without keeping the times.
+     * @param first the first checkpoint.
+     */
+    private void warmUp(int first) throws Exception {
+        if (fork) {
+            return;
+        }
+        generator.grow(Math.min(first, 10));
+        Map<String, List<Long>> times = new LinkedHashMap<>();
+        for (String command : COMMANDS) {
+            times.put(command, new ArrayList<>());
+        }
+        for (int i = 0; i < warmup; i++) {
+            sample(times);
+        }
+    }
+
+    /** Run every command once and add the time each took to TIMES.
+     * @param times the times of each command, in nanoseconds.
+     */
+    private void sample(Map<String, List<Long>> times) throws Exception {
+        List<String> branches = generator.branchNames();
+        String current = Tree.head().getBranchName();
+        List<String> working = Utils.plainFilenamesIn(".");
+        String name = working.get(generator.random()
+                .nextInt(working.size()));
+        generator.change(name);
+        times.get("add").add(time("add", name));
+        times.get("commit").add(time("commit", "sample " + name));
+        times.get("status").add(time("status"));
+        times.get("log").add(time("log"));
+        if (branches.size() > 1) {
+            String other = branches.get(
+                    (branches.indexOf(current) + 1) % branches.size());
+            times.get("checkout").add(time("checkout", other));
+            times.get("checkout").add(time("checkout", current));
+        }
+        times.get("merge").add(timeMerge(current));
+        Tree head = Tree.head();
+        String parent = head.getCommit().getParentID();
+        String id = head.getCommitId();
+        times.get("reset").add(time("reset", parent));
+        times.get("reset").add(time("reset", id));
+    }
+
+    /** Make a branch that diverges from CURRENT by one commit on
+     * each side and return the time taken to merge it into CURRENT.
+     * @param current the checked-out branch.
+     */
+    private long timeMerge(String current) throws Exception {
+        String side = "merge" + merges;
+        merges += 1;
+        RepoGenerator.run("branch", side);
+        commitChange("side " + side);
+        RepoGenerator.run("checkout", side);
+        commitChange("main " + side);
+        RepoGenerator.run("checkout", current);
+        long result = time("merge", side);
+        RepoGenerator.run("rm-branch", side);
+        return result;
+    }
+
+    /** Change a new file and commit it with MESSAGE.
+     * @param message the commit message.
+     */
+    private void commitChange(String message) {
+        String name = message.replace(' ', '-') + ".txt";
+        generator.change(name);
+        RepoGenerator.run("add", name);
+        RepoGenerator.run("commit", message);
+    }
+
+    /** Run the gitlet command ARGS and return how long it took in
+     * nanoseconds.
+     * @param args the command and its operands.
+     */
+    private long time(String... args) throws IOException,
+            InterruptedException {
+        long start = System.nanoTime();
+        if (fork) {
+            List<String> command = new ArrayList<>(List.of(
+                    ProcessHandle.current().info().command().orElse("java"),
+                    "-cp", System.getProperty("java.class.path"),
+                    "gitlet.Main"));
+            command.addAll(Arrays.asList(args));
+            new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start().waitFor();
+            Index.reset();
+            ObjectStore.reset();
+        } else {
+            RepoGenerator.run(args);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Return the Q quantile of SORTED, by the nearest-rank method.
+     * @param sorted the samples, in increasing order.
+     * @param q the quantile, between 0 and 1.
+     */
+    private static double percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /** Print how the median latency of each command grows with the
+     * number of commits.
+     */
+    private void report() {
+        System.out.println();
+        System.out.println("# command: median first -> last (commits), "
+                + "exponent");
+        for (Map.Entry<String, Map<Integer, Double>> entry
+                 : medians.entrySet()) {
+            Integer[] commits = entry.getValue().keySet()
+                    .toArray(new Integer[0]);
+            if (commits.length < 2) {
+                continue;
+            }
+            int first = commits[0];
+            int last = commits[commits.length - 1];
+            double before = entry.getValue().get(first);
+            double after = entry.getValue().get(last);
+            double exponent = Math.log(after / before)
+                    / Math.log((double) last / first);
+            System.out.printf("# %s: %.1f us -> %.1f us (%d -> %d), "
+                    + "%.2f%s%n", entry.getKey(), before, after, first, last,
+                    exponent, exponent > SUPER_LINEAR ? "  SUPER-LINEAR" : "");
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+* Builds a synthetic repository in the current directory by running
+* gitlet commands, to reproduce the shape of real repositories: the
+* number of files, commits and branches, how often branches are merged
+* and how large the files are. Every commit lands on a random branch,
+* changes a few files, and is followed by a merge of another random
+* branch with probability mergeDensity. Runs with the same options and
+* seed build the same history.
+*
+* Usage: java gitlet.RepoGenerator [--files N] [--commits M]
+*        [--branches B] [--merge-density P] [--sizes SPEC]
+*        [--changes C] [--seed S]
+* SPEC lists file sizes with their weights, such as 1k:70,16k:25,1m:5.
+* @author Yuhan Dong
+ */
+public class RepoGenerator {
+
+    /** Number of files the working tree grows to.*/
+    private int files = 1000;
+
+    /** Number of branches, master included.*/
+    private int branches = 4;
+
+    /** Probability that a commit is followed by a merge.*/
+    private double mergeDensity = 0.1;
+
+    /** Number of files changed by each commit.*/
+    private int changes = 3;
+
+    /** The file sizes to pick from.*/
+    private int[] sizes;
+
+    /** The running total of the weights of SIZES.*/
+    private int[] weights;
+
+    /** The source of every random choice.*/
+    private Random random = new Random(61);
+
+    /** The branch names.*/
+    private final List<String> names = new ArrayList<>();
+
+    /** Number of files created so far.*/
+    private int created;
+
+    /** Number of commits made so far, merges included.*/
+    private int commits;
+
+    /** A generator with the default options.*/
+    RepoGenerator() {
+        setSizes("1k:70,16k:25,1m:5");
+    }
+
+    /** Usage: java gitlet.RepoGenerator ARGS, see the class comment.*/
+    public static void main(String... args) {
+        RepoGenerator generator = new RepoGenerator();
+        int total = 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--commits")) {
+                total = Integer.parseInt(args[i + 1]);
+            } else if (!generator.option(args[i], args[i + 1])) {
+                System.err.println("Unknown option " + args[i]);
+                return;
+            }
+        }
+        if (new File(".").list().length != 0) {
+            System.err.println("Run the generator in an empty directory.");
+            return;
+        }
+        long start = System.nanoTime();
+        generator.init();
+        generator.grow(total);
+        System.out.printf("%d commits, %d files, %d branches in %.1f s%n",
+                generator.commits(), generator.created, generator.branches,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Apply the option NAME with VALUE and return true, or return
+     * false if there is no such option.
+     * @param name the option, such as --files.
+     * @param value its value.
+     */
+    boolean option(String name, String value) {
+        switch (name) {
+        case "--files":
+            files = Integer.parseInt(value);
+            break;
+        case "--branches":
+            branches = Math.max(1, Integer.parseInt(value));
+            break;
+        case "--merge-density":
+            mergeDensity = Double.parseDouble(value);
+            break;
+        case "--changes":
+            changes = Integer.parseInt(value);
+            break;
+        case "--sizes":
+            setSizes(value);
+            break;
+        case "--seed":
+            random = new Random(Long.parseLong(value));
+            break;
+        default:
+            return false;
+        }
+        return true;
+    }
+
+    /** Read the file sizes and their weights from SPEC.
+     * @param spec pairs of size and weight, such as 1k:70,1m:30.
+     */
+    private void setSizes(String spec) {
+        String[] parts = spec.split(",");
+        sizes = new int[parts.length];
+        weights = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].split(":");
+            sizes[i] = parseSize(pair[0]);
+            total += pair.length > 1 ? Integer.parseInt(pair[1]) : 1;
+            weights[i] = total;
+        }
+    }
+
+    /** Return the number of bytes in SIZE, which may end in k or m.
+     * @param size a size such as 512, 16k or 1m.
+     */
+    private static int parseSize(String size) {
+        String lower = size.toLowerCase();
+        if (lower.endsWith("k")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1))
+                    << 10;
+        } else if (lower.endsWith("m")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1))
+                    << 20;
+        }
+        return Integer.parseInt(lower);
+    }
+
+    /** Create the repository and its branches.*/
+    void init() {
+        run("init");
+        names.add("master");
+        for (int i = 1; i < branches; i++) {
+            names.add("branch" + i);
+            run("branch", "branch" + i);
+        }
+    }
+
+    /** Add commits until there are TOTAL of them.
+     * @param total the number of commits wanted.
+     */
+    void grow(int total) {
+        while (commits < total) {
+            String branch = names.get(random.nextInt(names.size()));
+            if (!branch.equals(Tree.head().getBranchName())) {
+                run("checkout", branch);
+            }
+            List<String> working = new ArrayList<>(
+                    Utils.plainFilenamesIn("."));
+            for (int i = 0; i < changes; i++) {
+                String name;
+                if (created < files || working.isEmpty()) {
+                    name = "file" + created + ".txt";
+                    created += 1;
+                    working.add(name);
+                } else {
+                    name = working.get(random.nextInt(working.size()));
+                }
+                change(name);
+                run("add", name);
+            }
+            run("commit", "commit " + commits);
+            commits += 1;
+            if (names.size() > 1 && random.nextDouble() < mergeDensity) {
+                String other = names.get(random.nextInt(names.size()));
+                if (!other.equals(branch)) {
+                    String before = Tree.head().getCommitId();
+                    run("merge", other);
+                    Commits head = Tree.head().getCommit();
+                    if (before.equals(head.getParentID())
+                            && head.getMergeParentID() != null) {
+                        commits += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Write new random content of a random size to the working
+     * file NAME.
+     * @param name the file name.
+     */
+    void change(String name) {
+        int pick = random.nextInt(weights[weights.length - 1]);
+        int i = 0;
+        while (weights[i] <= pick) {
+            i += 1;
+        }
+        byte[] data = new byte[sizes[i]];
+        random.nextBytes(data);
+        Utils.writeContents(new File(name), data);
+    }
+
+    /** Return the number of commits made, merges included.*/
+    int commits() {
+        return commits;
+    }
+
+    /** Return the branch names.*/
+    List<String> branchNames() {
+        return names;
+    }
+
+    /** Return the random source of this generator.*/
+    Random random() {
+        return random;
+    }
+
+    /** Run the gitlet command ARGS in this process and return what
+     * it printed.
+     * @param args the command and its operands.
+     */
+    static String run(String... args) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString(StandardCharsets.UTF_8);
+    }
+}